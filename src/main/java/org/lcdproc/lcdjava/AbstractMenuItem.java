@@ -2,6 +2,7 @@ package org.lcdproc.lcdjava;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.event.EventListenerList;
 
@@ -32,6 +33,27 @@ public abstract class AbstractMenuItem implements MenuItem
      */
     protected EventListenerList _listeners;
 
+    /**
+     * The server's reply to the last command sent for this item.
+     */
+    private volatile CompletableFuture<Response> _lastResponse;
+
+    /**
+     * The last command written for this item.
+     */
+    private final EncodedState _encodedState = new EncodedState();
+
+    /**
+     * Writes this item's state when the render scheduler is used.
+     */
+    private final Renderable _renderable = new Renderable()
+    {
+        void write()
+        {
+            _menu.writeItem(AbstractMenuItem.this);
+        }
+    };
+
     /**
      * Constructor.
      * @param id the of the item.
@@ -89,6 +111,48 @@ public abstract class AbstractMenuItem implements MenuItem
         _menu.removeItem(this);
     }
 
+    /**
+     * Get the server's reply to the last command sent for this item.
+     * <p>Only available while response tracking is switched on.
+     * @return a future that completes with the reply, or null if no command
+     * has been tracked.
+     * @see LCD#setResponseTracking(boolean)
+     */
+    public CompletableFuture<Response> getLastResponse()
+    {
+        return _lastResponse;
+    }
+
+    /**
+     * Set the server's reply to the last command sent for this item.
+     * @param response the future reply, ignored if null.
+     */
+    void setLastResponse(CompletableFuture<Response> response)
+    {
+        if (response != null)
+        {
+            _lastResponse = response;
+        }
+    }
+
+    /**
+     * Get the last command written for this item.
+     * @return the last command written.
+     */
+    EncodedState getEncodedState()
+    {
+        return _encodedState;
+    }
+
+    /**
+     * Get the part of this item written by the render scheduler.
+     * @return the Renderable.
+     */
+    Renderable getRenderable()
+    {
+        return _renderable;
+    }
+
     /** 
      * Strip any quotes from the provided text.
      * @param text the text to strip quotes from.
@@ -128,6 +192,16 @@ public abstract class AbstractMenuItem implements MenuItem
         return "-text \"" + stripQuotes(_text) + "\"";
     }
 
+    /** 
+     * Write the text of this menu item, the start of its data.
+     * @param sink where to write the data.
+     */
+    protected void encodeText(ByteSink sink)
+    {
+        sink.putString("-text ");
+        sink.putQuoted(_text);
+    }
+
     /**
      * Adds an ActionListener to the menu item.
      * @param listener the ActionListener to be added
@@ -149,6 +223,23 @@ public abstract class AbstractMenuItem implements MenuItem
 			l.actionPerformed(e);
 		}
     }
+
+    /**
+     * Tell the listeners that the user acted on this item.
+     */
+    protected void fireActionPerformed() {
+    	notifyActionPerformed(new ActionEvent(this, ActionEvent.ACTION_PERFORMED, getID()));
+    }
+
+    /**
+     * Apply an event LCDd sent for this item.
+     * <p>Events are ignored unless a subclass handles them.
+     * @param eventType the type of the event, for example <code>update</code>.
+     * @param value the value sent with the event, or <code>null</code> when
+     * not available.
+     */
+    protected void handleEvent(String eventType, String value) {
+    }
     
     /**
      * Return a String representing this MenuItem.
@@ -1,5 +1,7 @@
 package org.lcdproc.lcdjava;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Abstract parent class for Widgets.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
@@ -24,6 +26,37 @@ public abstract class AbstractWidget implements Widget
      */
     private Screen _screen;
 
+    /**
+     * The server's reply to the last command sent for this Widget.
+     */
+    private volatile CompletableFuture<Response> _lastResponse;
+
+    /**
+     * The last command written for this Widget.
+     */
+    private final EncodedState _encodedState = new EncodedState();
+
+    /**
+     * Writes this Widget's state when the render scheduler is used.
+     */
+    private final Renderable _renderable = new Renderable()
+    {
+        void write()
+        {
+            _screen.writeWidget(AbstractWidget.this);
+        }
+    };
+
+    /**
+     * The number of edits in progress, updates wait until the last one ends.
+     */
+    private int _editDepth;
+
+    /**
+     * Whether an update was requested while an edit was in progress.
+     */
+    private boolean _editPending;
+
     /**
      * Constructor.
      * @param id the of the Widget.
@@ -61,6 +94,48 @@ public abstract class AbstractWidget implements Widget
         _screen.removeWidget(this);
     }
 
+    /**
+     * Get the server's reply to the last command sent for this Widget.
+     * <p>Only available while response tracking is switched on.
+     * @return a future that completes with the reply, or null if no command
+     * has been tracked.
+     * @see LCD#setResponseTracking(boolean)
+     */
+    public CompletableFuture<Response> getLastResponse()
+    {
+        return _lastResponse;
+    }
+
+    /**
+     * Set the server's reply to the last command sent for this Widget.
+     * @param response the future reply, ignored if null.
+     */
+    void setLastResponse(CompletableFuture<Response> response)
+    {
+        if (response != null)
+        {
+            _lastResponse = response;
+        }
+    }
+
+    /**
+     * Get the last command written for this Widget.
+     * @return the last command written.
+     */
+    EncodedState getEncodedState()
+    {
+        return _encodedState;
+    }
+
+    /**
+     * Get the part of this Widget written by the render scheduler.
+     * @return the Renderable.
+     */
+    Renderable getRenderable()
+    {
+        return _renderable;
+    }
+
     /**
      * Strip any quotes from the provided text.
      * @param text the text to strip quotes from.
@@ -85,12 +160,113 @@ public abstract class AbstractWidget implements Widget
 
     /**
      * Update this Widget's state.
+     * <p>While an edit is in progress the update is held back until the
+     * edit ends.
      */
     protected void update()
     {
+        synchronized (this)
+        {
+            if (_editDepth > 0)
+            {
+                _editPending = true;
+                return;
+            }
+        }
         _screen.updateWidget(this);
     }
 
+    /**
+     * Start (or nest) an edit, holding back updates until it ends.
+     * <p>Every call must be matched by a call to {@link #endEdit()}.
+     */
+    protected void beginEdit()
+    {
+        synchronized (this)
+        {
+            _editDepth++;
+        }
+    }
+
+    /**
+     * End a (possibly nested) edit, sending a single update if anything was
+     * changed once the outermost edit ends.
+     */
+    protected void endEdit()
+    {
+        synchronized (this)
+        {
+            if (_editDepth == 0)
+            {
+                throw new LCDException("No edit in progress");
+            }
+            _editDepth--;
+            if (_editDepth > 0 || !_editPending)
+            {
+                return;
+            }
+            _editPending = false;
+        }
+        _screen.updateWidget(this);
+    }
+
+    /**
+     * Changes to several properties of a Widget, sent to the server as a
+     * single update.
+     * <p>Nothing is changed until {@link #apply()} is called.
+     * @param <E> the type of the Editor, returned by each method so calls
+     * can be chained.
+     */
+    public abstract static class Editor<E extends Editor<E>>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final AbstractWidget _widget;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(AbstractWidget widget)
+        {
+            _widget = widget;
+        }
+
+        /**
+         * Make the changes and send a single update for all of them.
+         */
+        public void apply()
+        {
+            _widget.beginEdit();
+            try
+            {
+                applyChanges();
+                _widget.update();
+            }
+            finally
+            {
+                _widget.endEdit();
+            }
+        }
+
+        /**
+         * Make the changes to the Widget, called while updates are held
+         * back.
+         */
+        protected abstract void applyChanges();
+
+        /**
+         * Return this Editor as its own type.
+         * @return this Editor.
+         */
+        @SuppressWarnings("unchecked")
+        protected E self()
+        {
+            return (E)this;
+        }
+    }
+
     /**
      * Return a String representing this Widget.
      * @return a String representing this Widget.
@@ -66,9 +66,25 @@ public class ActionMenuItem extends AbstractMenuItem
     
     @Override
     public String getData() {
-    	return super.getData() + " -menu_result " + _menuResult.val;
+    	StringSink sink = new StringSink();
+    	encodeData(sink);
+    	return sink.toString();
+    }
+
+    @Override
+    public void encodeData(ByteSink sink) {
+    	encodeText(sink);
+    	sink.putString(" -menu_result ");
+    	sink.putString(_menuResult.val);
     }
     
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_SELECT.equals(eventType)) {
+    		fireActionPerformed();
+    	}
+    }
+
     /** 
      * Construct a new ActionMenuItem.
      * @param menu the Submenu that owns the menu item.
@@ -139,32 +139,44 @@ public class AlphaMenuItem extends AbstractMenuItem
     
     @Override
     public String getData() {
-    	StringBuilder strb = new StringBuilder();
-    	strb.append(super.getData());
-    	strb.append(" -value \"");
-    	strb.append(_value);
-    	strb.append("\" -minlength ");
-    	strb.append(_minlength);
-    	strb.append(" -maxlength ");
-    	strb.append(_maxlength);
+    	StringSink sink = new StringSink();
+    	encodeData(sink);
+    	return sink.toString();
+    }
+
+    @Override
+    public void encodeData(ByteSink sink) {
+    	encodeText(sink);
+    	sink.putString(" -value \"");
+    	sink.putString(_value);
+    	sink.putString("\" -minlength ");
+    	sink.putInt(_minlength);
+    	sink.putString(" -maxlength ");
+    	sink.putInt(_maxlength);
     	if (!_passwordchar.isEmpty()) {
-    		strb.append(" -password_char \"");
-    		strb.append(_passwordchar);
-    		strb.append('"');
+    		sink.putString(" -password_char \"");
+    		sink.putString(_passwordchar);
+    		sink.put('"');
     	}
-    	strb.append(" -allow_caps ");
-    	strb.append(_allowCaps ? "true" : "false");
-    	strb.append(" -allow_noncaps ");
-    	strb.append(_allowNonCaps ? "true" : "false");
-    	strb.append(" -allow_numbers ");
-    	strb.append(_allowNumbers ? "true" : "false");
+    	sink.putString(" -allow_caps ");
+    	sink.putString(_allowCaps ? "true" : "false");
+    	sink.putString(" -allow_noncaps ");
+    	sink.putString(_allowNonCaps ? "true" : "false");
+    	sink.putString(" -allow_numbers ");
+    	sink.putString(_allowNumbers ? "true" : "false");
     	if (!_allowedExtra.isEmpty()) {
-    		strb.append(" -allowed_extra \"");
-    		strb.append(_allowedExtra);
-    		strb.append('"');
+    		sink.putString(" -allowed_extra \"");
+    		sink.putString(_allowedExtra);
+    		sink.put('"');
+    	}
+    }
+
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_UPDATE.equals(eventType)) {
+    		setValueNoUpdate(value);
+    		fireActionPerformed();
     	}
-    	
-    	return strb.toString();
     }
 
     /** 
@@ -48,6 +48,15 @@ public abstract class BarWidget extends PositionalWidget
         return _length;
     }
 
+    /**
+     * Start changing several properties of this Widget at once.
+     * @return an Editor, call {@link Editor#apply()} to make the changes.
+     */
+    public Editor edit()
+    {
+        return new Editor(this);
+    }
+
     /**
      * Return the data this Widget needs to update itself.
      * @return the data to update this Widget.
@@ -57,5 +66,70 @@ public abstract class BarWidget extends PositionalWidget
         return super.getData() + _length;
     }
 
-}
+    /**
+     * Write the position and length of this bar.
+     * @param sink where to write the data.
+     */
+    protected void encodeBar(ByteSink sink)
+    {
+        encodePosition(sink);
+        sink.putInt(_length);
+    }
 
+    /**
+     * Changes to several properties of a BarWidget, sent to the server
+     * as a single update.
+     */
+    public static class Editor
+        extends PositionalWidget.Editor<BarWidget.Editor>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final BarWidget _widget;
+
+        /**
+         * The new length.
+         */
+        private int _length;
+
+        /**
+         * Whether the length is being changed.
+         */
+        private boolean _lengthChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(BarWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the length.
+         * @param length the length.
+         * @return this Editor.
+         */
+        public Editor length(int length)
+        {
+            _length = length;
+            _lengthChanged = true;
+            return this;
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            super.applyChanges();
+            if (_lengthChanged)
+            {
+                _widget.setLength(_length);
+            }
+        }
+    }
+}
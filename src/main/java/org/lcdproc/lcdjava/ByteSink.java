@@ -0,0 +1,35 @@
+package org.lcdproc.lcdjava;
+
+/**
+ * Destination for the data of a command sent to LCDd.
+ * <p>Widgets, Screens and MenuItems describe their state by writing it to a
+ * ByteSink, which lets the state be encoded straight into the socket buffer
+ * without building intermediate Strings.
+ */
+public interface ByteSink
+{
+    /**
+     * Append a single character.
+     * @param c the character.
+     */
+    public void put(char c);
+
+    /**
+     * Append the decimal representation of a number.
+     * @param value the number.
+     */
+    public void putInt(int value);
+
+    /**
+     * Append some text exactly as given.
+     * @param text the text, <code>null</code> appends "null".
+     */
+    public void putString(String text);
+
+    /**
+     * Append some text surrounded by double quotes, leaving out any quotes
+     * in the text itself.
+     * @param text the text, <code>null</code> appends "null".
+     */
+    public void putQuoted(String text);
+}
@@ -99,9 +99,34 @@ public class CheckboxMenuItem extends AbstractMenuItem
     
     @Override
     public String getData() {
-    	return super.getData() + " -value " + _value.val + " -allow_gray " + (_allowGray ? "true" : "false");
+    	StringSink sink = new StringSink();
+    	encodeData(sink);
+    	return sink.toString();
+    }
+
+    @Override
+    public void encodeData(ByteSink sink) {
+    	encodeText(sink);
+    	sink.putString(" -value ");
+    	sink.putString(_value.val);
+    	sink.putString(" -allow_gray ");
+    	sink.putString(_allowGray ? "true" : "false");
     }
     
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_UPDATE.equals(eventType)) {
+    		if ("on".equals(value)) {
+    			setValueNoUpdate(CheckboxValue.On);
+    		} else if ("off".equals(value)) {
+    			setValueNoUpdate(CheckboxValue.Off);
+    		} else if ("gray".equals(value)) {
+    			setValueNoUpdate(CheckboxValue.Gray);
+    		}
+    		fireActionPerformed();
+    	}
+    }
+
     /** 
      * Construct a new CheckboxMenuItem.
      * @param menu the Submenu that owns the menu item.
@@ -0,0 +1,170 @@
+package org.lcdproc.lcdjava;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Commands gathered by one thread between {@link LCD#beginBatch()} and
+ * {@link LCD#commitBatch()}.
+ * <p>Each thread reuses its CommandBatch so the buffer only grows while the
+ * largest batch seen so far is being built.
+ */
+class CommandBatch
+{
+    /**
+     * The initial size of the buffer.
+     */
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * The buffer commands are gathered in, newline terminated.
+     */
+    private ByteBuffer _buffer;
+
+    /**
+     * The text of each command in the batch, null when not tracked.
+     */
+    private final List<String> _commands;
+
+    /**
+     * The future for each command in the batch, null when not tracked.
+     */
+    private final List<CompletableFuture<Response>> _futures;
+
+    /**
+     * How many times beginBatch has been called without a matching commit.
+     */
+    private int _depth;
+
+    /**
+     * Constructor.
+     */
+    CommandBatch()
+    {
+        _buffer = ByteBuffer.allocate(INITIAL_SIZE);
+        _commands = new ArrayList<>();
+        _futures = new ArrayList<>();
+    }
+
+    /**
+     * Start (or nest) a batch.
+     */
+    void begin()
+    {
+        _depth++;
+    }
+
+    /**
+     * End a (possibly nested) batch.
+     * @return <code>true</code> if the outermost batch has ended and the
+     * commands should be written, <code>false</code> otherwise.
+     */
+    boolean end()
+    {
+        if (_depth == 0)
+        {
+            throw new LCDException("No batch in progress");
+        }
+        _depth--;
+        return _depth == 0;
+    }
+
+    /**
+     * Is a batch in progress?
+     * @return <code>true</code> if a batch is in progress,
+     * <code>false</code> otherwise.
+     */
+    boolean isActive()
+    {
+        return _depth > 0;
+    }
+
+    /**
+     * Add a command to the batch.
+     * @param data the newline terminated command to add.
+     * @param command the command to record with the reply, may be null.
+     * @param future the future to complete with the reply, may be null.
+     */
+    void append(ByteBuffer data,
+                String command,
+                CompletableFuture<Response> future)
+    {
+        _commands.add(command);
+        _futures.add(future);
+
+        if (_buffer.remaining() < data.remaining())
+        {
+            grow(data.remaining());
+        }
+        _buffer.put(data);
+    }
+
+    /**
+     * Get the gathered commands ready for writing.
+     * <p>The batch is emptied by the next call to {@link #clear()}.
+     * @return the gathered commands.
+     */
+    ByteBuffer getData()
+    {
+        // Cast to Buffer so we still link against a Java 8 runtime
+        ((Buffer)_buffer).flip();
+        return _buffer;
+    }
+
+    /**
+     * Record every command in the batch as written.
+     * @param tracker the tracker waiting for replies.
+     */
+    void sent(ResponseTracker tracker)
+    {
+        for (int i = 0; i < _commands.size(); i++)
+        {
+            tracker.sent(_commands.get(i), _futures.get(i));
+        }
+    }
+
+    /**
+     * Get the text of each command in the batch.
+     * @return a copy of the commands, null entries were not tracked.
+     */
+    String[] getCommands()
+    {
+        return _commands.toArray(new String[_commands.size()]);
+    }
+
+    /**
+     * Get the future for each command in the batch.
+     * @return a copy of the futures, null entries were not tracked.
+     */
+    CompletableFuture<Response>[] getFutures()
+    {
+        return _futures.toArray(ResponseTracker.newFutures(_futures.size()));
+    }
+
+    /**
+     * Discard the gathered commands.
+     */
+    void clear()
+    {
+        ((Buffer)_buffer).clear();
+        _commands.clear();
+        _futures.clear();
+    }
+
+    /**
+     * Grow the buffer so it has room for at least the needed bytes.
+     * @param needed the number of bytes needed.
+     */
+    private void grow(int needed)
+    {
+        int capacity = Math.max(_buffer.capacity() * 2,
+                                _buffer.position() + needed);
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        ((Buffer)_buffer).flip();
+        buffer.put(_buffer);
+        _buffer = buffer;
+    }
+}
@@ -0,0 +1,194 @@
+package org.lcdproc.lcdjava;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes a single command straight into a reusable direct buffer.
+ * <p>Each thread has its own encoder, so building and writing a command
+ * allocates nothing. Characters are encoded as ISO-8859-1, the character set
+ * LCDd drivers expect, anything outside it is sent as <code>?</code>.
+ * Commands longer than LCDd will accept in one read are truncated.
+ * <p>A command must be written before the thread starts encoding the next.
+ */
+final class CommandEncoder implements ByteSink
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(CommandEncoder.class);
+
+    /**
+     * The encoder belonging to each thread.
+     */
+    private static final ThreadLocal<CommandEncoder> ENCODERS =
+        ThreadLocal.withInitial(CommandEncoder::new);
+
+    /**
+     * The buffer the command is encoded into.
+     */
+    private final ByteBuffer _buffer;
+
+    /**
+     * The most bytes of a command, leaving room for the line end.
+     */
+    private final int _maxLength;
+
+    /**
+     * The number of bytes of the command that have been dropped.
+     */
+    private int _dropped;
+
+    /**
+     * The length of the last finished command, excluding the line end.
+     */
+    private int _length;
+
+    /**
+     * Constructor.
+     */
+    private CommandEncoder()
+    {
+        _buffer = ByteBuffer.allocateDirect(LCD.MAX_DATA_LENGTH);
+        _maxLength = LCD.MAX_DATA_LENGTH - 1;
+    }
+
+    /**
+     * Start encoding a command with the current thread's encoder.
+     * @param command the start of the command.
+     * @return the encoder.
+     */
+    static CommandEncoder start(String command)
+    {
+        CommandEncoder encoder = ENCODERS.get();
+        // Cast to Buffer so we still link against a Java 8 runtime
+        ((Buffer)encoder._buffer).clear();
+        encoder._dropped = 0;
+        encoder.putString(command);
+        return encoder;
+    }
+
+    /**
+     * Append a single character.
+     * @param c the character.
+     */
+    public void put(char c)
+    {
+        if (_buffer.position() < _maxLength)
+        {
+            _buffer.put((c < 256) ? (byte)c : (byte)'?');
+        }
+        else
+        {
+            _dropped++;
+        }
+    }
+
+    /**
+     * Append the decimal representation of a number.
+     * @param value the number.
+     */
+    public void putInt(int value)
+    {
+        long remaining = value;
+        if (remaining < 0)
+        {
+            put('-');
+            remaining = -remaining;
+        }
+
+        long divisor = 1;
+        while (divisor * 10 <= remaining)
+        {
+            divisor *= 10;
+        }
+        while (divisor > 0)
+        {
+            put((char)('0' + remaining / divisor));
+            remaining %= divisor;
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * Append some text exactly as given.
+     * @param text the text, <code>null</code> appends "null".
+     */
+    public void putString(String text)
+    {
+        if (text == null)
+        {
+            text = "null";
+        }
+        for (int i = 0; i < text.length(); i++)
+        {
+            put(text.charAt(i));
+        }
+    }
+
+    /**
+     * Append some text surrounded by double quotes, leaving out any quotes
+     * in the text itself.
+     * @param text the text, <code>null</code> appends "null".
+     */
+    public void putQuoted(String text)
+    {
+        if (text == null)
+        {
+            text = "null";
+        }
+        put('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c != '"')
+            {
+                put(c);
+            }
+        }
+        put('"');
+    }
+
+    /**
+     * Compare the command encoded so far with the last one written for its
+     * owner, recording it if it differs.
+     * @param state the last command written for the owner.
+     * @return <code>true</code> if the command differs and should be written,
+     * <code>false</code> otherwise.
+     */
+    boolean changes(EncodedState state)
+    {
+        return state.update(_buffer);
+    }
+
+    /**
+     * Finish the command, ready for writing.
+     * @return the buffer holding the newline terminated command.
+     */
+    ByteBuffer finish()
+    {
+        if (_dropped > 0)
+        {
+            _log.error("Command too long, truncated " + _dropped + " bytes");
+        }
+        _length = _buffer.position();
+        _buffer.put((byte)'\n');
+        ((Buffer)_buffer).flip();
+        return _buffer;
+    }
+
+    /**
+     * Return the last finished command, without its line end.
+     * @return the command.
+     */
+    public String toString()
+    {
+        char[] chars = new char[_length];
+        for (int i = 0; i < _length; i++)
+        {
+            chars[i] = (char)(_buffer.get(i) & 0xff);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,71 @@
+package org.lcdproc.lcdjava;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The last command written to the server on behalf of a Widget, Screen or
+ * MenuItem.
+ * <p>Used to skip commands that would not change what the server already
+ * has. Must only be used while holding the lock that orders the owner's
+ * commands, so the recorded state always matches the last command written.
+ */
+class EncodedState
+{
+    /**
+     * The initial size of the recorded command.
+     */
+    private static final int INITIAL_SIZE = 64;
+
+    /**
+     * The last command written.
+     */
+    private byte[] _data = new byte[INITIAL_SIZE];
+
+    /**
+     * The length of the last command written, negative if unknown.
+     */
+    private int _length = -1;
+
+    /**
+     * Record the command being encoded, unless it matches the last one.
+     * @param command the buffer the command is being encoded into, from the
+     * start up to its position.
+     * @return <code>true</code> if the command differs from the last one and
+     * should be written, <code>false</code> otherwise.
+     */
+    boolean update(ByteBuffer command)
+    {
+        int length = command.position();
+        if (length == _length)
+        {
+            int i = 0;
+            while (i < length && _data[i] == command.get(i))
+            {
+                i++;
+            }
+            if (i == length)
+            {
+                return false;
+            }
+        }
+
+        if (_data.length < length)
+        {
+            _data = new byte[Math.max(length, _data.length * 2)];
+        }
+        for (int i = 0; i < length; i++)
+        {
+            _data[i] = command.get(i);
+        }
+        _length = length;
+        return true;
+    }
+
+    /**
+     * Forget the last command, so the next one is always written.
+     */
+    void invalidate()
+    {
+        _length = -1;
+    }
+}
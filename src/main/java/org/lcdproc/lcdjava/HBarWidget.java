@@ -34,6 +34,15 @@ public class HBarWidget extends BarWidget
         return Widget.WIDGET_HBAR;
     }
 
+    /**
+     * Write the data this Widget needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        encodeBar(sink);
+    }
+
     /**
      * Construct a new HBarWidget.
      * @param screen the Screen that owns the Widget.
@@ -49,9 +58,7 @@ public class HBarWidget extends BarWidget
         try
         {
             widget = (HBarWidget)screen.constructWidget(Widget.WIDGET_HBAR);
-            widget.setX(x);
-            widget.setY(y);
-            widget.setLength(length);
+            widget.edit().x(x).y(y).length(length).apply();
         }
         catch (LCDException e)
         {
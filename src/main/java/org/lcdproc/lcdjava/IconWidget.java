@@ -164,13 +164,34 @@ public class IconWidget extends PositionalWidget
         return _iconName;
     }
 
+    /**
+     * Start changing several properties of this Widget at once.
+     * @return an Editor, call {@link Editor#apply()} to make the changes.
+     */
+    public Editor edit()
+    {
+        return new Editor(this);
+    }
+
     /**
      * Return the data this Widget needs to update itself.
      * @return the data to update this Widget.
      */
     public String getData()
     {
-        return super.getData() + "\"" + stripQuotes(_iconName) + "\"";
+        StringSink sink = new StringSink();
+        encodeData(sink);
+        return sink.toString();
+    }
+
+    /**
+     * Write the data this Widget needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        encodePosition(sink);
+        sink.putQuoted(_iconName);
     }
 
     /**
@@ -191,9 +212,7 @@ public class IconWidget extends PositionalWidget
         try
         {
             widget = (IconWidget)screen.constructWidget(WIDGET_ICON);
-            widget.setX(x);
-            widget.setY(y);
-            widget.setText(iconName);
+            widget.edit().x(x).y(y).icon(iconName).apply();
         }
         catch (LCDException e)
         {
@@ -202,5 +221,61 @@ public class IconWidget extends PositionalWidget
 
         return widget;
     }
-}
 
+    /**
+     * Changes to several properties of a IconWidget, sent to the server
+     * as a single update.
+     */
+    public static class Editor
+        extends PositionalWidget.Editor<IconWidget.Editor>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final IconWidget _widget;
+
+        /**
+         * The new icon name.
+         */
+        private String _icon;
+
+        /**
+         * Whether the icon name is being changed.
+         */
+        private boolean _iconChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(IconWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the icon name.
+         * @param icon the icon name.
+         * @return this Editor.
+         */
+        public Editor icon(String icon)
+        {
+            _icon = icon;
+            _iconChanged = true;
+            return this;
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            super.applyChanges();
+            if (_iconChanged)
+            {
+                _widget.setText(_icon);
+            }
+        }
+    }
+}
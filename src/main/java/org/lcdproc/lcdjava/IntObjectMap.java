@@ -0,0 +1,262 @@
+package org.lcdproc.lcdjava;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Map from primitive int keys to non-null values.
+ * <p>Keys and values are kept in two parallel arrays using open addressing
+ * with linear probing, so lookups never box the key and each entry costs an
+ * int and a reference. Removal shifts later entries back rather than leaving
+ * tombstones, and the arrays shrink again as entries are removed.
+ * <p>Not thread safe, callers must synchronize access.
+ * @param <V> the type of the values.
+ */
+class IntObjectMap<V>
+{
+    /**
+     * The smallest number of slots, always a power of two.
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The key in each slot.
+     */
+    private int[] _keys;
+
+    /**
+     * The value in each slot, null for an empty slot.
+     */
+    private Object[] _values;
+
+    /**
+     * The number of entries.
+     */
+    private int _size;
+
+    /**
+     * Constructor.
+     */
+    IntObjectMap()
+    {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the number of entries.
+     * @return the number of entries.
+     */
+    int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Get the value for a key.
+     * @param key the key.
+     * @return the value, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key)
+    {
+        int slot = find(key);
+        return (slot < 0) ? null : (V)_values[slot];
+    }
+
+    /**
+     * Is there a value for a key?
+     * @param key the key.
+     * @return <code>true</code> if there is a value, <code>false</code>
+     * otherwise.
+     */
+    boolean containsKey(int key)
+    {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Set the value for a key.
+     * @param key the key.
+     * @param value the value, must not be null.
+     * @return the previous value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value)
+    {
+        int mask = _keys.length - 1;
+        int slot = slot(key, mask);
+        while (_values[slot] != null)
+        {
+            if (_keys[slot] == key)
+            {
+                V previous = (V)_values[slot];
+                _values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        _keys[slot] = key;
+        _values[slot] = value;
+        _size++;
+        if (_size * 2 > _keys.length)
+        {
+            resize(_keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value for a key.
+     * @param key the key.
+     * @return the removed value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key)
+    {
+        int slot = find(key);
+        if (slot < 0)
+        {
+            return null;
+        }
+
+        V removed = (V)_values[slot];
+        _values[slot] = null;
+        _size--;
+
+        // Shift back any later entries that probed past the freed slot
+        int mask = _keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (_values[next] != null)
+        {
+            int home = slot(_keys[next], mask);
+            if (!inRange(home, free, next))
+            {
+                _keys[free] = _keys[next];
+                _values[free] = _values[next];
+                _values[next] = null;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        if (_keys.length > MIN_CAPACITY && _size * 8 < _keys.length)
+        {
+            resize(_keys.length / 2);
+        }
+        return removed;
+    }
+
+    /**
+     * Pass every value to the given action.
+     * @param action the action.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> action)
+    {
+        for (Object value : _values)
+        {
+            if (value != null)
+            {
+                action.accept((V)value);
+            }
+        }
+    }
+
+    /**
+     * Get a copy of the values.
+     * @return the values.
+     */
+    List<V> values()
+    {
+        List<V> values = new ArrayList<>(_size);
+        forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Find the slot holding a key.
+     * @param key the key.
+     * @return the slot, or -1 if the key is not present.
+     */
+    private int find(int key)
+    {
+        int mask = _keys.length - 1;
+        int slot = slot(key, mask);
+        while (_values[slot] != null)
+        {
+            if (_keys[slot] == key)
+            {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the slot a key would ideally occupy.
+     * @param key the key.
+     * @param mask the number of slots less one.
+     * @return the slot.
+     */
+    private static int slot(int key, int mask)
+    {
+        // Spread sequential ids, as well as ids with common low bits
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Is a slot within the cyclic range after one slot, up to and including
+     * another?
+     * @param slot the slot to test.
+     * @param after the slot before the start of the range.
+     * @param last the last slot in the range.
+     * @return <code>true</code> if the slot is in the range,
+     * <code>false</code> otherwise.
+     */
+    private static boolean inRange(int slot, int after, int last)
+    {
+        return (after <= last) ? (after < slot && slot <= last) :
+                                 (after < slot || slot <= last);
+    }
+
+    /**
+     * Move every entry into a new number of slots.
+     * @param capacity the new number of slots, a power of two.
+     */
+    private void resize(int capacity)
+    {
+        int[] keys = _keys;
+        Object[] values = _values;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (values[i] != null)
+            {
+                int slot = slot(keys[i], mask);
+                while (_values[slot] != null)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                _keys[slot] = keys[i];
+                _values[slot] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Allocate empty slots, keeping the current size.
+     * @param capacity the number of slots, a power of two.
+     */
+    private void allocate(int capacity)
+    {
+        _keys = new int[capacity];
+        _values = new Object[capacity];
+    }
+}
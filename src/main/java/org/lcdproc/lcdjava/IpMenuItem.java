@@ -72,14 +72,26 @@ public class IpMenuItem extends AbstractMenuItem
 
     @Override
     public String getData() {
-    	StringBuilder strb = new StringBuilder();
-    	strb.append(super.getData());
-    	strb.append(" -value \"");
-    	strb.append(_value);
-    	strb.append("\" -v6 ");
-    	strb.append(_v6 ? "true" : "false");
-    	
-    	return strb.toString();
+    	StringSink sink = new StringSink();
+    	encodeData(sink);
+    	return sink.toString();
+    }
+
+    @Override
+    public void encodeData(ByteSink sink) {
+    	encodeText(sink);
+    	sink.putString(" -value \"");
+    	sink.putString(_value);
+    	sink.putString("\" -v6 ");
+    	sink.putString(_v6 ? "true" : "false");
+    }
+
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_UPDATE.equals(eventType)) {
+    		setValueNoUpdate(value);
+    		fireActionPerformed();
+    	}
     }
 
     /** 
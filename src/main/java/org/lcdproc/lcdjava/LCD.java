@@ -1,14 +1,18 @@
 package org.lcdproc.lcdjava;
 
-import java.awt.event.ActionEvent;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,14 +36,16 @@ public class LCD implements LCDListener
     private static final Logger _log = LoggerFactory.getLogger(LCD.class);
 
     /**
-     * How often to poll for changes.
+     * How long to wait for the server to reply to <code>hello</code> by
+     * default (in milliseconds).
      */
-    private static final int POLL = 100;
+    public static final int CONNECT_TIMEOUT = 3000;
 
     /**
-     * How many times to poll the server before giving up.
+     * How long shutdown waits for queued commands to be written before
+     * closing the socket anyway (in milliseconds).
      */
-    private static final int POLL_REPEAT = 30;
+    private static final int SHUTDOWN_TIMEOUT = 3000;
 
     /**
      * The pattern for matching a grouping of one or more numbers and .
@@ -64,6 +70,11 @@ public class LCD implements LCDListener
         " cellwid " + PATTERN_NUMERIC +
         " cellhgt " + PATTERN_NUMERIC;
 
+    /**
+     * The response from LCDd that indicates it accepted our command.
+     */
+    public static final String RESPONSE_SUCCESS = "success";
+
     /**
      * The response from LCDd that indicates it didn't understand our command.
      */
@@ -142,22 +153,22 @@ public class LCD implements LCDListener
     /**
      * The response from LCDd that indicates an action menu item was selected.
      */
-    private static final String EVENT_SELECT = "select";
+    static final String EVENT_SELECT = "select";
 
     /**
      * The response from LCDd that indicates an menu item was updated.
      */
-    private static final String EVENT_UPDATE = "update";
+    static final String EVENT_UPDATE = "update";
 
     /**
      * The response from LCDd that indicates a slider was moved to the right.
      */
-    private static final String EVENT_PLUS = "plus";
+    static final String EVENT_PLUS = "plus";
 
     /**
      * The response from LCDd that indicates a slider was moved to the left.
      */
-    private static final String EVENT_MINUS = "minus";
+    static final String EVENT_MINUS = "minus";
 
     /**
      * The protocol version that we know how to deal with.
@@ -175,7 +186,7 @@ public class LCD implements LCDListener
      *         (filedes, "huh? Too much data received... quiet down!\n");
      * }
      */
-    private static final int MAX_DATA_LENGTH = 7168;
+    static final int MAX_DATA_LENGTH = 7168;
 
     /**
      * The measurement of a <i>LCD frame</i>, documented as one eight of a
@@ -184,14 +195,58 @@ public class LCD implements LCDListener
     public static final float FRAME = 0.125f;
 
     /**
-     * The Socket used to talk and listen to the LCDd server.
+     * The SocketChannel used to talk and listen to the LCDd server.
+     */
+    private SocketChannel _channel;
+
+    /**
+     * The writer we send all data to the server with.
+     */
+    private LCDSocketWriter _writer;
+
+    /**
+     * Matches replies from the server to the commands we wrote.
+     */
+    private final ResponseTracker _tracker = new ResponseTracker();
+
+    /**
+     * The queue commands are written through in asynchronous mode.
+     * <p>Will be null in synchronous mode.
+     */
+    private volatile LCDCommandQueue _queue;
+
+    /**
+     * Sends changes once per frame, null if changes are sent immediately.
+     */
+    private volatile RenderScheduler _renderScheduler;
+
+    /**
+     * Whether Widget updates are held back while LCDd ignores their Screen.
+     */
+    private volatile boolean _deferIgnoredUpdates;
+
+    /**
+     * The thread that writes updates held back while LCDd ignored a Screen,
+     * null until deferral is first switched on.
+     */
+    private volatile ExecutorService _deferredWriter;
+
+    /**
+     * The batch of commands being gathered by each thread.
      */
-    private Socket _socket;
+    private final ThreadLocal<CommandBatch> _batch =
+        ThreadLocal.withInitial(CommandBatch::new);
 
     /**
-     * The Writer we send all data to the server with.
+     * The number of commands written.
      */
-    private BufferedWriter _out;
+    private final LongAdder _writeCount = new LongAdder();
+
+    /**
+     * The number of commands skipped because they would not have changed
+     * anything.
+     */
+    private final LongAdder _elidedWriteCount = new LongAdder();
 
     /**
      * Thread that listens for responses from the server in a non-blocking
@@ -231,14 +286,16 @@ public class LCD implements LCDListener
 
     /**
      * The Map of Screens, indexed by the Screen id.
+     * <p>Guarded by its own lock, which is only held to read or change the
+     * Map.
      */
-    private final Map<Integer, Screen> _screens;
+    private final IntObjectMap<Screen> _screens;
 
     /**
      * The count of screens we have created.
      * <p>This is used internally to ensure Screens have unique ids.
      */
-    private int _screenCounter;
+    private final AtomicInteger _screenCounter = new AtomicInteger();
 
     /**
      * The root of the client's menu
@@ -267,12 +324,27 @@ public class LCD implements LCDListener
     public LCD(String host, int port, String clientName)
         throws LCDException
     {
-        _screens = new HashMap<>();
+        this(host, port, clientName, CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Public constructor.
+     * @param host the LCDd host.
+     * @param port the LCDd port.
+     * @param clientName the name of this client as shown to the user
+     * @param timeout how long to wait for the server to reply to our
+     * greeting (in milliseconds).
+     * @throws LCDException if there was a problem connecting to the server.
+     */
+    public LCD(String host, int port, String clientName, int timeout)
+        throws LCDException
+    {
+        _screens = new IntObjectMap<>();
         _rootMenu = new Submenu(this);
 
         try
         {
-            String response = connect(host, port, clientName);
+            String response = connect(host, port, clientName, timeout);
             if (response == null)
             {
                 throw new LCDException(
@@ -368,7 +440,7 @@ public class LCD implements LCDListener
      */
     public void setListenStatus(int screenId, boolean listening)
     {
-        Screen screen = _screens.get(screenId);
+        Screen screen = getScreen(screenId);
         if (screen != null)
         {
             screen.setListening(listening);
@@ -389,68 +461,14 @@ public class LCD implements LCDListener
      * @param value the value returned or <code>null</code>when not available
      */
     @Override
-	public void menuAction(String menuId, String eventType, String value) {
-		String menuParts[] = menuId.split("_");
-		StringBuilder id = new StringBuilder();
-		MenuItem menu = _rootMenu;
-		for (String part : menuParts) {
-			if (!"".equals(part)) {
-				id.append('_');
-				id.append(part);
-				if (menu instanceof Submenu) {
-					menu = ((Submenu)menu).getMenuItem(id.toString());
-				} else {
-					break;
-				}
-				if (menu == null) {
-					break;
-				}
-			}
-		}
-		if (menu != null) {
-            switch (eventType) {
-                case LCD.EVENT_SELECT:
-                    if (menu instanceof ActionMenuItem) {
-                        ((ActionMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                    }
-                    break;
-                case LCD.EVENT_UPDATE:
-                    if (menu instanceof CheckboxMenuItem) {
-                        if ("on".equals(value)) {
-                            ((CheckboxMenuItem) menu).setValueNoUpdate(CheckboxMenuItem.CheckboxValue.On);
-                        } else if ("off".equals(value)) {
-                            ((CheckboxMenuItem) menu).setValueNoUpdate(CheckboxMenuItem.CheckboxValue.Off);
-                        } else if ("gray".equals(value)) {
-                            ((CheckboxMenuItem) menu).setValueNoUpdate(CheckboxMenuItem.CheckboxValue.Gray);
-                        }
-                        ((CheckboxMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                    } else if (menu instanceof RingMenuItem) {
-                        ((RingMenuItem) menu).setValueNoUpdate(Integer.parseInt(value));
-                        ((RingMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                    } else if (menu instanceof NumericMenuItem) {
-                        ((NumericMenuItem) menu).setValueNoUpdate(Integer.parseInt(value));
-                        ((NumericMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                    } else if (menu instanceof AlphaMenuItem) {
-                        ((AlphaMenuItem) menu).setValueNoUpdate(value);
-                        ((AlphaMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                    } else if (menu instanceof IpMenuItem) {
-                        ((IpMenuItem) menu).setValueNoUpdate(value);
-                        ((IpMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                    }
-                    break;
-                case LCD.EVENT_PLUS:
-                case LCD.EVENT_MINUS:
-                    if (menu instanceof SliderMenuItem) {
-                        int v = Integer.parseInt(value);
-                        if (v != ((SliderMenuItem) menu).getValue()) {
-                            ((SliderMenuItem) menu).setValueNoUpdate(v);
-                            ((NumericMenuItem) menu).notifyActionPerformed(new ActionEvent(menu, ActionEvent.ACTION_PERFORMED, menu.getID()));
-                        }
-                    }
-                    break;
-            }
-		}
-	}
+    public void menuAction(String menuId, String eventType, String value)
+    {
+        MenuItem item = _rootMenu.findMenuItem(menuId);
+        if (item instanceof AbstractMenuItem)
+        {
+            ((AbstractMenuItem)item).handleEvent(eventType, value);
+        }
+    }
 
     /**
      * Shut down the server, terminating any threads.
@@ -460,6 +478,28 @@ public class LCD implements LCDListener
         throws LCDException
     {
         _log.debug("Shutdown requested");
+        disableRenderScheduler();
+        ExecutorService deferredWriter = _deferredWriter;
+        if (deferredWriter != null)
+        {
+            deferredWriter.shutdown();
+        }
+        LCDCommandQueue queue;
+        synchronized (this)
+        {
+            queue = _queue;
+            _queue = null;
+        }
+        // The writer may be stuck if LCDd stopped reading, closing the
+        // socket is what wakes it up
+        if (queue != null && !queue.shutdown(SHUTDOWN_TIMEOUT))
+        {
+            _log.warn("Timed out writing queued commands, discarding them");
+        }
+        else
+        {
+            queue = null;
+        }
         if (_poller != null)
         {
             _poller.interrupt();
@@ -474,15 +514,28 @@ public class LCD implements LCDListener
         try
         {
             _log.debug("Closing socket");
-            if (_socket != null && !_socket.isClosed())
+            if (_channel != null && _channel.isOpen())
             {
-                _socket.close();
+                _channel.close();
+            }
+            if (_writer != null)
+            {
+                _writer.close();
             }
         }
         catch (IOException e)
         {
             throw new LCDException(e);
         }
+        finally
+        {
+            if (queue != null)
+            {
+                // Fails whatever is left now the socket is closed
+                queue.shutdown(SHUTDOWN_TIMEOUT);
+            }
+            _tracker.fail(new LCDException("Connection closed"));
+        }
     }
 
     /**
@@ -490,7 +543,7 @@ public class LCD implements LCDListener
      * @param name the Screen name.
      * @return the newly constructed Screen.
      */
-    public synchronized Screen constructScreen(String name)
+    public Screen constructScreen(String name)
     {
         return constructScreen(name, Screen.PRIORITY_HIDDEN);
     }
@@ -501,7 +554,7 @@ public class LCD implements LCDListener
      * @param priority the screen priority.
      * @return the newly constructed Screen.
      */
-    public synchronized Screen constructScreen(String name, String priority)
+    public Screen constructScreen(String name, String priority)
     {
         return constructScreen(name, priority, false);
     }
@@ -514,12 +567,12 @@ public class LCD implements LCDListener
      * <code>false</code> to leave in unactivated.
      * @return the newly constructed Screen.
      */
-    public synchronized Screen constructScreen(String name,
-                                               String priority,
-                                               boolean activate)
+    public Screen constructScreen(String name,
+                                  String priority,
+                                  boolean activate)
     {
-        Screen screen = new Screen(this, _screenCounter, name);
-        _screenCounter++;
+        Screen screen =
+            new Screen(this, _screenCounter.getAndIncrement(), name);
 
         screen.setPriority(priority);
 
@@ -531,18 +584,43 @@ public class LCD implements LCDListener
         return screen;
     }
 
+    /**
+     * Get an active Screen.
+     * @param screenId the Screen id.
+     * @return the Screen, or null if there is no such active Screen.
+     */
+    private Screen getScreen(int screenId)
+    {
+        synchronized (_screens)
+        {
+            return _screens.get(screenId);
+        }
+    }
+
     /**
      * Add this screen to the LCD server.
      * <p>There is no need to call this, call {@link Screen#activate()} instead.
+     * <p>Commands for a Screen are ordered by locking the Screen, so threads
+     * working on different Screens never wait for each other.
      * @param screen the Screen to add.
      */
-    protected synchronized void addScreen(Screen screen)
+    protected void addScreen(Screen screen)
     {
-        Integer id = screen.getId();
-        if (!_screens.containsKey(id))
+        synchronized (screen)
         {
-            _screens.put(id, screen);
-            write(LCD.CMD_SCREEN_ADD + id);
+            synchronized (_screens)
+            {
+                if (_screens.containsKey(screen.getId()))
+                {
+                    return;
+                }
+                _screens.put(screen.getId(), screen);
+            }
+            screen.getEncodedState().invalidate();
+            screen.getPriorityState().invalidate();
+            CommandEncoder encoder = CommandEncoder.start(CMD_SCREEN_ADD);
+            encoder.putInt(screen.getId());
+            write(encoder);
             updateScreen(screen);
         }
     }
@@ -551,12 +629,60 @@ public class LCD implements LCDListener
      * Update this screen to the LCD server.
      * @param screen the Screen to update.
      */
-    protected synchronized void updateScreen(Screen screen)
+    protected void updateScreen(Screen screen)
     {
-        Integer id = screen.getId();
-        if (_screens.containsKey(id))
+        if (!scheduleRender(screen.getRenderable()))
         {
-            write(LCD.CMD_SCREEN_SET + screen.getData());
+            writeScreen(screen);
+        }
+    }
+
+    /**
+     * Write a Screen's current state to the server, if it is still active.
+     * <p>When only the priority has changed just the priority is sent.
+     * @param screen the Screen to write.
+     */
+    void writeScreen(Screen screen)
+    {
+        synchronized (screen)
+        {
+            if (getScreen(screen.getId()) == screen)
+            {
+                CommandEncoder encoder =
+                    CommandEncoder.start(CMD_SCREEN_SET);
+                screen.encodePriority(encoder);
+                boolean priorityChanged =
+                    encoder.changes(screen.getPriorityState());
+
+                encoder = CommandEncoder.start(CMD_SCREEN_SET);
+                screen.encodeAttributes(encoder);
+                if (encoder.changes(screen.getEncodedState()))
+                {
+                    encoder = CommandEncoder.start(CMD_SCREEN_SET);
+                    screen.encodeData(encoder);
+                }
+                else if (priorityChanged)
+                {
+                    encoder = CommandEncoder.start(CMD_SCREEN_SET);
+                    screen.encodePriority(encoder);
+                }
+                else
+                {
+                    _elidedWriteCount.increment();
+                    return;
+                }
+
+                try
+                {
+                    screen.setLastResponse(write(encoder));
+                }
+                catch (LCDException e)
+                {
+                    screen.getEncodedState().invalidate();
+                    screen.getPriorityState().invalidate();
+                    throw e;
+                }
+            }
         }
     }
 
@@ -565,7 +691,7 @@ public class LCD implements LCDListener
      * @param screen the Screen to remove.
      * @return the removed Screen, or null if not removed.
      */
-    protected synchronized Screen removeScreen(Screen screen)
+    protected Screen removeScreen(Screen screen)
     {
         return removeScreen(screen.getId());
     }
@@ -575,10 +701,40 @@ public class LCD implements LCDListener
      * @param screenId the Screen id to remove.
      * @return the removed Screen, or null if not removed.
      */
-    protected synchronized Screen removeScreen(int screenId)
+    protected Screen removeScreen(int screenId)
     {
-        write(CMD_SCREEN_DEL + screenId);
-        return _screens.remove(screenId);
+        Screen screen = getScreen(screenId);
+        if (screen == null)
+        {
+            // Not one we know about, ask the server to remove it anyway
+            writeScreenDel(screenId);
+            return null;
+        }
+
+        synchronized (screen)
+        {
+            synchronized (_screens)
+            {
+                if (_screens.remove(screenId) == null)
+                {
+                    // Removed while we waited for the lock
+                    return null;
+                }
+            }
+            writeScreenDel(screenId);
+            return screen;
+        }
+    }
+
+    /**
+     * Tell the server to remove a Screen.
+     * @param screenId the Screen id.
+     */
+    private void writeScreenDel(int screenId)
+    {
+        CommandEncoder encoder = CommandEncoder.start(CMD_SCREEN_DEL);
+        encoder.putInt(screenId);
+        write(encoder);
     }
 
 	public Submenu getRootMenu() {
@@ -622,65 +778,493 @@ public class LCD implements LCDListener
      * @param host the hostname to connect to.
      * @param port the port to connect to.
      * @param clientName the name of this client as shown to the user
-     * @return the response from the server.
+     * @param timeout how long to wait for a response (in milliseconds).
+     * @return the response from the server, or null if there was none.
      * @throws IOException in case of a network problem.
      */
-    private String connect(String host, int port, String clientName)
+    private String connect(String host, int port, String clientName,
+                           int timeout)
         throws IOException
     {
-        _socket = new Socket(host, port);
-        BufferedReader in = new BufferedReader(new InputStreamReader(
-                    _socket.getInputStream()));
-        _out = new BufferedWriter(new OutputStreamWriter(
-                    _socket.getOutputStream()));
-        _poller = new LCDSocketPoller(in, this);
+        _channel = SocketChannel.open(new InetSocketAddress(host, port));
+        _writer = new LCDSocketWriter(_channel, MAX_DATA_LENGTH);
+        _poller = new LCDSocketPoller(_channel, this, _tracker);
         _poller.start();
 
         write(CMD_INIT);
         String response = null;
 
-        for (int i = 0; i < POLL_REPEAT && response == null; i++)
+        try
+        {
+            response = _poller.getHandshake().get(timeout,
+                                                  TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            // No response, reported by the caller
+        }
+        catch (ExecutionException e)
+        {
+            throw new LCDException("Unable to connect to the server at " +
+                    host + ":" + port, e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        write(CMD_CLIENT_SET + clientName);
+
+        return response;
+    }
+
+    /**
+     * Switch between synchronous and asynchronous writes.
+     * <p>In synchronous mode (the default) each command is written to the
+     * socket by the thread that issued it. In asynchronous mode commands are
+     * queued and written by a dedicated thread, so a slow LCDd never blocks
+     * the threads updating the display. Use {@link #flush()} to find out when
+     * queued commands have been written.
+     * <p>Switching back to synchronous mode writes anything still queued. The
+     * mode should not be changed while other threads are writing.
+     * @param async <code>true</code> for asynchronous writes,
+     * <code>false</code> for synchronous writes.
+     */
+    public synchronized void setAsync(boolean async)
+    {
+        LCDCommandQueue queue = _queue;
+        if (async && queue == null)
+        {
+            queue = new LCDCommandQueue(_writer, _tracker, MAX_DATA_LENGTH);
+            queue.start();
+            _queue = queue;
+        }
+        else if (!async && queue != null)
+        {
+            _queue = null;
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * Are commands written asynchronously?
+     * @return <code>true</code> if commands are written asynchronously,
+     * <code>false</code> otherwise.
+     */
+    public boolean isAsync()
+    {
+        return _queue != null;
+    }
+
+    /**
+     * Switch tracking of the server's replies on or off.
+     * <p>LCDd replies to every command with <code>success</code> or
+     * <code>huh?</code>. With tracking on, each reply is matched to the
+     * command that caused it and {@link #write(String)}, as well as
+     * <code>getLastResponse()</code> on Screens, Widgets and MenuItems,
+     * provide a future that completes with the {@link Response}. Futures are
+     * completed on the thread reading from the server, so callbacks attached
+     * to them must not block.
+     * <p>Tracking is off by default, which avoids allocating a future for
+     * every command.
+     * @param tracking <code>true</code> to track replies, <code>false</code>
+     * otherwise.
+     */
+    public void setResponseTracking(boolean tracking)
+    {
+        _tracker.setEnabled(tracking);
+    }
+
+    /**
+     * Are the server's replies being tracked?
+     * @return <code>true</code> if replies are tracked, <code>false</code>
+     * otherwise.
+     */
+    public boolean isResponseTracking()
+    {
+        return _tracker.isEnabled();
+    }
+
+    /**
+     * Send changes to Widgets, Screens and MenuItems once per frame
+     * ({@link #FRAME}) rather than as they happen.
+     * @see #enableRenderScheduler(int)
+     */
+    public void enableRenderScheduler()
+    {
+        enableRenderScheduler((int)(FRAME * 1000));
+    }
+
+    /**
+     * Send changes to Widgets, Screens and MenuItems once per frame rather
+     * than as they happen.
+     * <p>A change only marks its owner as dirty. Every frame the latest state
+     * of each dirty owner is written in a single batch, so values that change
+     * many times between frames cost one command. Adding and removing
+     * Screens, Widgets and MenuItems is still written immediately.
+     * @param frameMillis the time between frames (in milliseconds).
+     */
+    public void enableRenderScheduler(int frameMillis)
+    {
+        RenderScheduler previous;
+        synchronized (this)
+        {
+            previous = _renderScheduler;
+            _renderScheduler = new RenderScheduler(this, frameMillis);
+        }
+        if (previous != null)
+        {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Go back to sending changes as they happen, writing any changes still
+     * waiting for the next frame.
+     */
+    public void disableRenderScheduler()
+    {
+        RenderScheduler scheduler;
+        synchronized (this)
+        {
+            scheduler = _renderScheduler;
+            _renderScheduler = null;
+        }
+        if (scheduler != null)
+        {
+            // Not holding our lock, the last frame may need it
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Are changes sent once per frame?
+     * @return <code>true</code> if the render scheduler is enabled,
+     * <code>false</code> otherwise.
+     */
+    public boolean isRenderSchedulerEnabled()
+    {
+        return _renderScheduler != null;
+    }
+
+    /**
+     * Leave writing a change to the render scheduler, if it is enabled.
+     * @param renderable the part of the Widget, Screen or MenuItem that
+     * changed.
+     * @return <code>true</code> if the render scheduler will write the
+     * change, <code>false</code> if it must be written now.
+     */
+    boolean scheduleRender(Renderable renderable)
+    {
+        RenderScheduler scheduler = _renderScheduler;
+        if (scheduler == null)
+        {
+            return false;
+        }
+        return scheduler.markDirty(renderable);
+    }
+
+    /**
+     * Hold back Widget updates while LCDd is ignoring their Screen.
+     * <p>LCDd tells us which Screen it is showing with <code>listen</code>
+     * and <code>ignore</code>. With deferral on, Widget updates for a Screen
+     * that is not being listened to are not written. When LCDd starts
+     * listening, the latest state of each changed Widget is written in a
+     * single batch. Screen changes, and adding or removing Widgets, are
+     * always written immediately.
+     * <p>Switching deferral off writes everything held back.
+     * @param defer <code>true</code> to hold back updates to ignored Screens,
+     * <code>false</code> to write every update.
+     */
+    public void setDeferIgnoredUpdates(boolean defer)
+    {
+        if (defer)
         {
             synchronized (this)
             {
-                try
+                if (_deferredWriter == null)
+                {
+                    _deferredWriter = Executors.newSingleThreadExecutor(
+                            runnable ->
+                    {
+                        Thread thread =
+                            new Thread(runnable, "LCDDeferredWriter");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        _deferIgnoredUpdates = defer;
+        if (!defer)
+        {
+            Screen[] screens;
+            synchronized (_screens)
+            {
+                screens = _screens.values().toArray(new Screen[0]);
+            }
+            for (Screen screen : screens)
+            {
+                writeWidgets(screen);
+            }
+        }
+    }
+
+    /**
+     * Are Widget updates held back while LCDd ignores their Screen?
+     * @return <code>true</code> if updates are held back, <code>false</code>
+     * otherwise.
+     */
+    public boolean isDeferIgnoredUpdates()
+    {
+        return _deferIgnoredUpdates;
+    }
+
+    /**
+     * Write the Widget updates held back while LCDd was ignoring a Screen.
+     * <p>Done on our own writer thread since LCDd starting to listen is
+     * reported by the thread reading from the server, which must never block
+     * on a write.
+     * @param screen the Screen now being listened to.
+     */
+    void writeDeferred(Screen screen)
+    {
+        ExecutorService writer = _deferredWriter;
+        if (writer == null || writer.isShutdown())
+        {
+            return;
+        }
+
+        writer.execute(() ->
+        {
+            try
+            {
+                writeWidgets(screen);
+            }
+            catch (LCDException e)
+            {
+                _log.error("Unable to write deferred updates", e);
+            }
+        });
+    }
+
+    /**
+     * Write the current state of every Widget on a Screen in one batch.
+     * <p>The Screen stays locked until the batch is written, otherwise an
+     * update written directly in the meantime could be overwritten by the
+     * older state in the batch, which the Widget would then believe the
+     * server already has.
+     * @param screen the Screen.
+     */
+    private void writeWidgets(Screen screen)
+    {
+        synchronized (screen)
+        {
+            batch(screen::writeWidgets);
+        }
+    }
+
+    /**
+     * Get a future that completes once every command issued so far has been
+     * written to the server.
+     * <p>In synchronous mode commands are written before the call that issued
+     * them returns, so the future is already complete.
+     * @return the future.
+     */
+    public CompletableFuture<Void> flush()
+    {
+        LCDCommandQueue queue = _queue;
+        return (queue == null) ? CompletableFuture.completedFuture(null) :
+                                 queue.flush();
+    }
+
+    /**
+     * Start gathering commands sent by the current thread into a batch.
+     * <p>Nothing is written to the server until the matching call to
+     * {@link #commitBatch()}, the whole batch is then written with as few
+     * writes as possible. Batches may be nested, only the outermost commit
+     * writes anything.
+     */
+    public void beginBatch()
+    {
+        _batch.get().begin();
+    }
+
+    /**
+     * Write the commands gathered since {@link #beginBatch()}.
+     * @throws LCDException if no batch was started or in case of a network
+     * problem.
+     */
+    public void commitBatch()
+        throws LCDException
+    {
+        CommandBatch batch = _batch.get();
+        if (batch.end())
+        {
+            try
+            {
+                LCDCommandQueue queue = _queue;
+                if (queue == null)
                 {
-                    Thread.sleep(POLL);
-                    response = _poller.getLastLine();
+                    synchronized (_writer)
+                    {
+                        batch.sent(_tracker);
+                        _writer.writeBatch(batch.getData());
+                    }
                 }
-                catch (InterruptedException e)
+                else
                 {
-                    // Do nothing
+                    ByteBuffer data = batch.getData();
+                    ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+                    copy.put(data);
+                    // Cast to Buffer so we still link against a Java 8 runtime
+                    ((Buffer)copy).flip();
+                    queue.add(copy, batch.getCommands(), batch.getFutures());
                 }
             }
+            catch (IOException e)
+            {
+                throw new LCDException(e);
+            }
+            finally
+            {
+                batch.clear();
+            }
         }
-        write(CMD_CLIENT_SET + clientName);
+    }
 
-        return response;
+    /**
+     * Run the given commands as a single batch.
+     * <p>The batch is committed even if the commands throw an exception, so
+     * the server stays in step with the state of the Widgets.
+     * @param commands the commands to run.
+     * @throws LCDException in case of a network problem.
+     */
+    public void batch(Runnable commands)
+        throws LCDException
+    {
+        beginBatch();
+        try
+        {
+            commands.run();
+        }
+        finally
+        {
+            commitBatch();
+        }
     }
 
     /**
      * Write the data to the server.
+     * <p>If the current thread has a batch in progress the data is added to
+     * the batch instead.
      * @param text the text to write.
+     * @return a future that completes with the server's reply, or null if
+     * replies are not being tracked.
+     * @see #setResponseTracking(boolean)
+     */
+    protected CompletableFuture<Response> write(String text)
+    {
+        return write(CommandEncoder.start(text));
+    }
+
+    /**
+     * Write the command built up in the encoder to the server.
+     * <p>In synchronous mode the command is written straight from the
+     * encoder's buffer, otherwise it is copied into the batch or queue.
+     * @param encoder the encoder holding the command.
+     * @return a future that completes with the server's reply, or null if
+     * replies are not being tracked.
      */
-    protected void write(String text)
+    CompletableFuture<Response> write(CommandEncoder encoder)
     {
+        ByteBuffer data = encoder.finish();
+        _writeCount.increment();
+
+        String command = null;
+        CompletableFuture<Response> future = null;
+        if (_tracker.isEnabled())
+        {
+            command = encoder.toString();
+            future = new CompletableFuture<>();
+        }
+
         try
         {
-            String tmpString = text;
-            if (text.length() >= MAX_DATA_LENGTH)
+            CommandBatch batch = _batch.get();
+            LCDCommandQueue queue = _queue;
+            if (batch.isActive())
             {
-                _log.error("Text too long: " + text.length() + ", truncating");
-                tmpString = text.substring(0, MAX_DATA_LENGTH - 1);
+                batch.append(data, command, future);
+            }
+            else if (queue != null)
+            {
+                ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+                copy.put(data);
+                ((Buffer)copy).flip();
+                queue.add(copy, command, future);
+            }
+            else
+            {
+                synchronized (_writer)
+                {
+                    _tracker.sent(command, future);
+                    _writer.write(data);
+                }
             }
-            _out.write(tmpString);
-            _out.newLine();
-            _out.flush();
         }
         catch (IOException e)
         {
             throw new LCDException(e);
         }
+
+        return future;
+    }
+
+    /**
+     * Write the command built up in the encoder to the server, unless it is
+     * the same as the last command written for its owner.
+     * @param encoder the encoder holding the command.
+     * @param state the last command written for the owner.
+     * @return a future that completes with the server's reply, or null if
+     * replies are not being tracked or the command was skipped.
+     */
+    CompletableFuture<Response> write(CommandEncoder encoder,
+                                      EncodedState state)
+    {
+        if (!encoder.changes(state))
+        {
+            _elidedWriteCount.increment();
+            return null;
+        }
+
+        try
+        {
+            return write(encoder);
+        }
+        catch (LCDException e)
+        {
+            state.invalidate();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of commands written to the server.
+     * @return the number of commands written.
+     */
+    public long getWriteCount()
+    {
+        return _writeCount.sum();
+    }
+
+    /**
+     * Get the number of updates that were not written because they would
+     * not have changed what the server is displaying.
+     * @return the number of commands skipped.
+     */
+    public long getElidedWriteCount()
+    {
+        return _elidedWriteCount.sum();
     }
 
     /**
@@ -0,0 +1,298 @@
+package org.lcdproc.lcdjava;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread that writes queued commands to the LCD socket.
+ * <p>Any number of threads may add commands without blocking, this thread is
+ * the only consumer and writes as many queued commands as will fit in one
+ * LCDd read with a single gathering write.
+ */
+class LCDCommandQueue extends Thread
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(LCDCommandQueue.class);
+
+    /**
+     * The most commands to gather into a single write.
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * An empty command, used to wait for everything queued before it.
+     */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * The writer that owns the socket.
+     */
+    private final LCDSocketWriter _writer;
+
+    /**
+     * The tracker waiting for replies to written commands.
+     */
+    private final ResponseTracker _tracker;
+
+    /**
+     * The most data LCDd will accept in one read.
+     */
+    private final int _maxLength;
+
+    /**
+     * The commands waiting to be written.
+     */
+    private final ConcurrentLinkedQueue<Command> _queue;
+
+    /**
+     * The commands gathered for the current write.
+     */
+    private final Command[] _gathered;
+
+    /**
+     * The data of the commands gathered for the current write.
+     */
+    private final ByteBuffer[] _data;
+
+    /**
+     * Flag that tracks if we should keep running or not.
+     */
+    private volatile boolean _running = true;
+
+    /**
+     * Constructor.
+     * @param writer the writer that owns the socket.
+     * @param tracker the tracker waiting for replies to written commands.
+     * @param maxLength the most data LCDd will accept in one read.
+     */
+    LCDCommandQueue(LCDSocketWriter writer,
+                    ResponseTracker tracker,
+                    int maxLength)
+    {
+        super("LCDCommandQueue");
+        setDaemon(true);
+        _writer = writer;
+        _tracker = tracker;
+        _maxLength = maxLength;
+        _queue = new ConcurrentLinkedQueue<>();
+        _gathered = new Command[MAX_GATHER];
+        _data = new ByteBuffer[MAX_GATHER];
+    }
+
+    /**
+     * Queue a single newline terminated command for writing.
+     * @param data the command to write.
+     * @param command the command to record with the reply, may be null.
+     * @param future the future to complete with the reply, may be null.
+     * @return a future that completes once the data has been written.
+     */
+    CompletableFuture<Void> add(ByteBuffer data,
+                                String command,
+                                CompletableFuture<Response> future)
+    {
+        CompletableFuture<Response>[] futures = ResponseTracker.newFutures(1);
+        futures[0] = future;
+        return add(data, new String[] {command}, futures);
+    }
+
+    /**
+     * Queue newline terminated commands for writing.
+     * @param data the commands to write.
+     * @param commands the commands to record with each reply, entries may be
+     * null.
+     * @param futures the futures to complete with each reply, entries may be
+     * null.
+     * @return a future that completes once the data has been written.
+     */
+    CompletableFuture<Void> add(ByteBuffer data,
+                                String[] commands,
+                                CompletableFuture<Response>[] futures)
+    {
+        Command command = new Command(data, commands, futures);
+        _queue.offer(command);
+        LockSupport.unpark(this);
+        return command._written;
+    }
+
+    /**
+     * Get a future that completes once everything queued so far has been
+     * written.
+     * @return the future.
+     */
+    CompletableFuture<Void> flush()
+    {
+        return add(EMPTY, new String[0], ResponseTracker.newFutures(0));
+    }
+
+    /**
+     * Write everything already queued then stop the thread.
+     */
+    void shutdown()
+    {
+        shutdown(0);
+    }
+
+    /**
+     * Write everything already queued then stop the thread, giving up
+     * waiting after a while.
+     * @param timeout how long to wait for the thread to stop (in
+     * milliseconds), zero to wait for ever.
+     * @return <code>true</code> if the thread has stopped,
+     * <code>false</code> if it is still writing.
+     */
+    boolean shutdown(long timeout)
+    {
+        _running = false;
+        LockSupport.unpark(this);
+        try
+        {
+            join(timeout);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return !isAlive();
+    }
+
+    /**
+     * Write queued commands until shut down.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            Command command = _queue.poll();
+            if (command == null)
+            {
+                if (!_running)
+                {
+                    break;
+                }
+                LockSupport.park(this);
+            }
+            else
+            {
+                write(command);
+            }
+        }
+
+        _log.debug("Terminating");
+    }
+
+    /**
+     * Write the given command along with as many queued commands as fit in
+     * a single LCDd read.
+     * @param first the first command to write.
+     */
+    private void write(Command first)
+    {
+        int count = 1;
+        int length = first._data.remaining();
+        _gathered[0] = first;
+        _data[0] = first._data;
+
+        Command next = _queue.peek();
+        while (next != null && count < MAX_GATHER &&
+               length + next._data.remaining() <= _maxLength)
+        {
+            _queue.poll();
+            _gathered[count] = next;
+            _data[count] = next._data;
+            length += next._data.remaining();
+            count++;
+            next = _queue.peek();
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            Command command = _gathered[i];
+            for (int j = 0; j < command._commands.length; j++)
+            {
+                _tracker.sent(command._commands[j], command._futures[j]);
+            }
+        }
+
+        Throwable failure = null;
+        try
+        {
+            if (length > _maxLength)
+            {
+                // A whole batch on its own, let the writer split it up
+                _writer.writeBatch(first._data);
+            }
+            else
+            {
+                _writer.write(_data, 0, count);
+            }
+        }
+        catch (IOException e)
+        {
+            _log.error("Unable to write to server", e);
+            failure = new LCDException(e);
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if (failure == null)
+            {
+                _gathered[i]._written.complete(null);
+            }
+            else
+            {
+                _gathered[i]._written.completeExceptionally(failure);
+            }
+            _gathered[i] = null;
+            _data[i] = null;
+        }
+    }
+
+    /**
+     * A queued command.
+     */
+    private static class Command
+    {
+        /**
+         * The data to write.
+         */
+        private final ByteBuffer _data;
+
+        /**
+         * The text of each command in the data, entries may be null.
+         */
+        private final String[] _commands;
+
+        /**
+         * The future for each command in the data, entries may be null.
+         */
+        private final CompletableFuture<Response>[] _futures;
+
+        /**
+         * Completed once the data has been written.
+         */
+        private final CompletableFuture<Void> _written;
+
+        /**
+         * Constructor.
+         * @param data the data to write.
+         * @param commands the text of each command in the data.
+         * @param futures the future for each command in the data.
+         */
+        Command(ByteBuffer data,
+                String[] commands,
+                CompletableFuture<Response>[] futures)
+        {
+            _data = data;
+            _commands = commands;
+            _futures = futures;
+            _written = new CompletableFuture<>();
+        }
+    }
+}
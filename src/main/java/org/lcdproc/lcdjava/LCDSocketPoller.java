@@ -1,15 +1,24 @@
 package org.lcdproc.lcdjava;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Thread that listens for data on the LCD socket.
+ * <p>The thread blocks in a {@link Selector} and only wakes up when LCDd has
+ * sent us something, lines are tokenized straight out of a reusable buffer.
+ * Strings are only created for data that is handed on as a String, such as
+ * menu ids and values or error messages.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: LCDSocketPoller.java,v 1.3 2008-07-06 15:38:34 boncey Exp $
@@ -25,105 +34,189 @@ public class LCDSocketPoller extends Thread
     private static Logger _log = LoggerFactory.getLogger(LCDSocketPoller.class);
 
     /**
-     * How often to poll for changes.
+     * The size of the read buffer, the same as the MAXMSG buffer LCDd uses.
      */
-    private static final int POLL = 100;
+    private static final int BUFFER_SIZE = 8192;
 
     /**
-     * The Pattern that matches ignore/listen events.
+     * The token that starts a success response.
      */
-    private static final Pattern IGNORE_STATUS = Pattern.compile(
-            "(ignore|listen)\\s+(\\d+).*");
+    private static final byte[] TOKEN_SUCCESS = token(LCD.RESPONSE_SUCCESS);
 
     /**
-     * The Pattern that matches menu events.
+     * The token that starts an error response.
      */
-    private static final Pattern MENU_STATUS = Pattern.compile(
-            "menuevent\\s+(\\w+)\\s+(\\w+)\\s*(.*)");
+    private static final byte[] TOKEN_ERROR = token(LCD.RESPONSE_ERROR);
 
     /**
-     * The Reader to read data from.
+     * The token that starts a listen event.
      */
-    private BufferedReader _in;
+    private static final byte[] TOKEN_LISTEN = token(LCD.RESPONSE_LISTEN);
 
     /**
-     * The last line of data received.
-     * <p>Will be null if no data was received.
+     * The token that starts an ignore event.
      */
-    private String _lastLine;
+    private static final byte[] TOKEN_IGNORE = token(LCD.RESPONSE_IGNORE);
+
+    /**
+     * The token that starts a menu event.
+     */
+    private static final byte[] TOKEN_MENU = token("menuevent");
+
+    /**
+     * The token that starts a key event.
+     */
+    private static final byte[] TOKEN_KEY = token("key");
+
+    /**
+     * The token LCDd sends when it is shutting down.
+     */
+    private static final byte[] TOKEN_BYE = token("bye");
+
+    /**
+     * The menu event types LCDd sends, passed on without creating a String.
+     */
+    private static final String[] MENU_EVENTS =
+        {"select", "update", "plus", "minus", "enter", "leave"};
+
+    /**
+     * The tokens for each of the menu event types.
+     */
+    private static final byte[][] MENU_EVENT_TOKENS =
+        new byte[MENU_EVENTS.length][];
+
+    static
+    {
+        for (int i = 0; i < MENU_EVENTS.length; i++)
+        {
+            MENU_EVENT_TOKENS[i] = token(MENU_EVENTS[i]);
+        }
+    }
+
+    /**
+     * The channel to read data from.
+     */
+    private final SocketChannel _channel;
+
+    /**
+     * The Selector that wakes us up when data arrives.
+     */
+    private final Selector _selector;
+
+    /**
+     * The buffer data is read into, any partial line is kept at the start.
+     */
+    private final ByteBuffer _buffer;
+
+    /**
+     * The Charset used to decode lines, the same one commands are encoded
+     * with.
+     */
+    private final Charset _charset;
+
+    /**
+     * Completed with the first line received, the server's reply to
+     * <code>hello</code>.
+     */
+    private final CompletableFuture<String> _handshake;
 
     /**
      * The listener to notify of listen/ignore events.
      */
     private LCDListener _listener;
 
+    /**
+     * The tracker waiting for replies to our commands, may be null.
+     */
+    private final ResponseTracker _tracker;
+
     /**
      * Public constructor.
-     * @param in the BufferedReader that will recieve data from the server.
+     * <p>The channel is switched to non-blocking mode.
+     * @param channel the SocketChannel that will recieve data from the server.
      * @param listener the LCDListener that gets notified of screens being
      * listened to or ignored.
+     * @throws IOException if the channel could not be registered.
      */
-    public LCDSocketPoller(BufferedReader in, LCDListener listener)
+    public LCDSocketPoller(SocketChannel channel, LCDListener listener)
+        throws IOException
     {
-        _in = in;
+        this(channel, listener, null);
+    }
+
+    /**
+     * Constructor.
+     * <p>The channel is switched to non-blocking mode.
+     * @param channel the SocketChannel that will recieve data from the server.
+     * @param listener the LCDListener that gets notified of screens being
+     * listened to or ignored.
+     * @param tracker the tracker to pass replies to, may be null.
+     * @throws IOException if the channel could not be registered.
+     */
+    LCDSocketPoller(SocketChannel channel,
+                    LCDListener listener,
+                    ResponseTracker tracker)
+        throws IOException
+    {
+        _channel = channel;
         _listener = listener;
+        _tracker = tracker;
+        _handshake = new CompletableFuture<>();
+        _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        _charset = StandardCharsets.ISO_8859_1;
+        _selector = Selector.open();
+        _channel.configureBlocking(false);
+        _channel.register(_selector, SelectionKey.OP_READ);
     }
 
     /**
-     * Poll the socket every 100 milliseconds.
+     * Wait for data on the socket and process each complete line.
      */
     @Override
     public void run()
     {
-        while (!interrupted())
+        try
         {
-            try {
-                if (!_in.ready()) {
-                    Thread.sleep(POLL);
+            while (!interrupted())
+            {
+                _selector.select();
+                _selector.selectedKeys().clear();
+
+                int read = _channel.read(_buffer);
+                if (read < 0)
+                {
+                    _log.info("Connection closed by server");
+                    break;
                 }
-                if (_in.ready())
+                else if (read > 0)
                 {
-                    _lastLine = _in.readLine();
-                    if (_lastLine == null)
-                        continue;
-                    Matcher listenIgnore = IGNORE_STATUS.matcher(_lastLine);
-                    Matcher menuEvent = MENU_STATUS.matcher(_lastLine);
-                    if (_lastLine.startsWith(LCD.RESPONSE_ERROR))
-                    {
-                        _log.warn("Got a response of " + _lastLine +
-                                " from server");
-                    }
-                    else if (_listener != null)
-                    {
-
-                        if (listenIgnore.matches())
-                        {
-                            boolean listen = (LCD.RESPONSE_LISTEN.equals(
-                                        listenIgnore.group(1)));
-                            try
-                            {
-                                int screenId = Integer.parseInt(listenIgnore.group(2));
-                                _listener.setListenStatus(screenId, listen);
-                            }
-                            catch (NumberFormatException e)
-                            {
-                                // Ignore
-                            }
-                        }
-                        else if (menuEvent.matches())
-                        {
-                            _listener.menuAction(menuEvent.group(2), menuEvent.group(1), menuEvent.group(3));
-                        }
-                    }
+                    processLines();
                 }
             }
-            catch (InterruptedException e)
+        }
+        catch (IOException e)
+        {
+            if (!isInterrupted())
             {
-                interrupt();
+                _log.error("Caught IOException", e);
+            }
+        }
+        finally
+        {
+            _handshake.completeExceptionally(
+                    new LCDException("Connection closed before handshake"));
+            if (_tracker != null)
+            {
+                _tracker.fail(new LCDException("Connection closed"));
+            }
+
+            try
+            {
+                _selector.close();
             }
             catch (IOException e)
             {
-                _log.error("Caught IOException", e);
+                _log.warn("Unable to close selector", e);
             }
         }
 
@@ -131,14 +224,270 @@ public class LCDSocketPoller extends Thread
     }
 
     /**
-     * Get the last line received <i>non-blocking</i>.
-     * <p>Calling this clears the last line received.
-     * @return the last line received.
+     * Handle every complete line in the buffer, keeping any trailing partial
+     * line for the next read.
+     */
+    private void processLines()
+    {
+        byte[] data = _buffer.array();
+        int end = _buffer.position();
+        int start = 0;
+
+        for (int i = 0; i < end; i++)
+        {
+            if (data[i] == '\n')
+            {
+                int length = i - start;
+                if (length > 0 && data[i - 1] == '\r')
+                {
+                    length--;
+                }
+                processLine(data, start, start + length);
+                start = i + 1;
+            }
+        }
+
+        // Cast to Buffer so we still link against a Java 8 runtime
+        if (start > 0)
+        {
+            System.arraycopy(data, start, data, 0, end - start);
+            ((Buffer)_buffer).position(end - start);
+        }
+        else if (!_buffer.hasRemaining())
+        {
+            _log.warn("Discarding " + end + " bytes without a line end");
+            ((Buffer)_buffer).clear();
+        }
+    }
+
+    /**
+     * Process a single line received from the server.
+     * @param data the buffer holding the line.
+     * @param start the index of the start of the line.
+     * @param end the index of the end of the line, excluding the line end.
+     */
+    private void processLine(byte[] data, int start, int end)
+    {
+        if (!_handshake.isDone())
+        {
+            String line = new String(data, start, end - start, _charset);
+            _handshake.complete(line);
+            processResponse(line, !matches(data, start, end, TOKEN_ERROR));
+        }
+        else if (matches(data, start, end, TOKEN_SUCCESS))
+        {
+            processResponse(LCD.RESPONSE_SUCCESS, true);
+        }
+        else if (matches(data, start, end, TOKEN_ERROR))
+        {
+            String line = new String(data, start, end - start, _charset);
+            Response response = processResponse(line, false);
+            _log.warn("Got a response of " + line + " from server" +
+                      ((response == null || response.getCommand() == null) ?
+                       "" : " to '" + response.getCommand() + "'"));
+        }
+        else if (matches(data, start, end, TOKEN_LISTEN))
+        {
+            processListen(data, start + TOKEN_LISTEN.length, end, true);
+        }
+        else if (matches(data, start, end, TOKEN_IGNORE))
+        {
+            processListen(data, start + TOKEN_IGNORE.length, end, false);
+        }
+        else if (matches(data, start, end, TOKEN_MENU))
+        {
+            processMenuEvent(data, start + TOKEN_MENU.length, end);
+        }
+        else if (matches(data, start, end, TOKEN_KEY))
+        {
+            if (_log.isDebugEnabled())
+            {
+                _log.debug("Ignoring key event " +
+                           new String(data, start, end - start, _charset));
+            }
+        }
+        else if (matches(data, start, end, TOKEN_BYE))
+        {
+            _log.info("Server is shutting down");
+        }
+    }
+
+    /**
+     * Process the arguments of a listen or ignore event.
+     * @param data the buffer holding the line.
+     * @param start the index just after the event name.
+     * @param end the index of the end of the line.
+     * @param listen <code>true</code> for a listen event, <code>false</code>
+     * for an ignore event.
+     */
+    private void processListen(byte[] data, int start, int end, boolean listen)
+    {
+        int i = skipSpace(data, start, end);
+        long screenId = 0;
+        int digits = 0;
+        while (i < end && data[i] >= '0' && data[i] <= '9')
+        {
+            // Stop growing once too big, so it can't wrap round
+            if (screenId <= Integer.MAX_VALUE)
+            {
+                screenId = screenId * 10 + (data[i] - '0');
+            }
+            digits++;
+            i++;
+        }
+
+        if (digits == 0 || screenId > Integer.MAX_VALUE)
+        {
+            _log.warn("Ignoring " + (listen ? "listen" : "ignore") +
+                      " event for unknown screen " +
+                      new String(data, start, end - start, _charset).trim());
+        }
+        else if (_listener != null)
+        {
+            _listener.setListenStatus((int)screenId, listen);
+        }
+    }
+
+    /**
+     * Process the arguments of a menu event.
+     * <p>The format is <code>menuevent type id [value]</code>.
+     * @param data the buffer holding the line.
+     * @param start the index just after the event name.
+     * @param end the index of the end of the line.
+     */
+    private void processMenuEvent(byte[] data, int start, int end)
+    {
+        int typeStart = skipSpace(data, start, end);
+        int typeEnd = skipToken(data, typeStart, end);
+        int idStart = skipSpace(data, typeEnd, end);
+        int idEnd = skipToken(data, idStart, end);
+        int valueStart = skipSpace(data, idEnd, end);
+
+        if (typeStart == typeEnd || idStart == idEnd || _listener == null)
+        {
+            return;
+        }
+
+        String type = null;
+        for (int i = 0; i < MENU_EVENTS.length && type == null; i++)
+        {
+            if (matches(data, typeStart, typeEnd, MENU_EVENT_TOKENS[i]))
+            {
+                type = MENU_EVENTS[i];
+            }
+        }
+        if (type == null)
+        {
+            type = new String(data, typeStart, typeEnd - typeStart, _charset);
+        }
+
+        String id = new String(data, idStart, idEnd - idStart, _charset);
+        String value = (valueStart < end) ?
+            new String(data, valueStart, end - valueStart, _charset) : null;
+
+        _listener.menuAction(id, type, value);
+    }
+
+    /**
+     * Pass a reply to the oldest command still waiting for one.
+     * @param line the reply.
+     * @param success whether the reply reports success.
+     * @return the Response, if one was created.
+     */
+    private Response processResponse(String line, boolean success)
+    {
+        return (_tracker == null) ? null : _tracker.received(line, success);
+    }
+
+    /**
+     * Does the line start with the token as a whole word?
+     * @param data the buffer holding the line.
+     * @param start the index of the start of the line.
+     * @param end the index of the end of the line.
+     * @param token the token to look for.
+     * @return <code>true</code> if the line starts with the token followed by
+     * white space or the end of the line, <code>false</code> otherwise.
+     */
+    private static boolean matches(byte[] data, int start, int end, byte[] token)
+    {
+        if (end - start < token.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < token.length; i++)
+        {
+            if (data[start + i] != token[i])
+            {
+                return false;
+            }
+        }
+        int next = start + token.length;
+        return next == end || isSpace(data[next]);
+    }
+
+    /**
+     * Skip over any white space.
+     * @param data the buffer holding the line.
+     * @param start the index to start from.
+     * @param end the index of the end of the line.
+     * @return the index of the first character that is not white space.
+     */
+    private static int skipSpace(byte[] data, int start, int end)
+    {
+        int i = start;
+        while (i < end && isSpace(data[i]))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skip over a token.
+     * @param data the buffer holding the line.
+     * @param start the index of the start of the token.
+     * @param end the index of the end of the line.
+     * @return the index of the first white space character after the token.
+     */
+    private static int skipToken(byte[] data, int start, int end)
+    {
+        int i = start;
+        while (i < end && !isSpace(data[i]))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Is this byte white space?
+     * @param b the byte.
+     * @return <code>true</code> for a space or tab, <code>false</code>
+     * otherwise.
+     */
+    private static boolean isSpace(byte b)
+    {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Get the bytes of a token.
+     * @param text the token.
+     * @return the ASCII bytes of the token.
+     */
+    private static byte[] token(String text)
+    {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Get the server's reply to <code>hello</code>.
+     * <p>The future completes as soon as the first line arrives, or
+     * exceptionally if the connection closes first.
+     * @return the future holding the first line received.
      */
-    synchronized String getLastLine()
+    CompletableFuture<String> getHandshake()
     {
-        String ret = _lastLine;
-        _lastLine = null;
-        return ret;
+        return _handshake;
     }
 }
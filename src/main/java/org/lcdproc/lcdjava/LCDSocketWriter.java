@@ -0,0 +1,195 @@
+package org.lcdproc.lcdjava;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Writes commands to the non-blocking LCD socket.
+ * <p>All writes are serialised on this object so commands from different
+ * threads can never interleave on the wire.
+ */
+class LCDSocketWriter
+{
+    /**
+     * The channel to write data to.
+     */
+    private final SocketChannel _channel;
+
+    /**
+     * The most data LCDd will accept in one read.
+     */
+    private final int _maxLength;
+
+    /**
+     * The Selector used to wait for the socket to drain.
+     * <p>Only opened the first time the socket's send buffer fills up.
+     */
+    private Selector _selector;
+
+    /**
+     * Constructor.
+     * @param channel the SocketChannel to write to.
+     * @param maxLength the maximum length of a single command.
+     */
+    LCDSocketWriter(SocketChannel channel, int maxLength)
+    {
+        _channel = channel;
+        _maxLength = maxLength;
+    }
+
+    /**
+     * Write a single newline terminated command.
+     * @param command the command to write.
+     * @throws IOException in case of a network problem.
+     */
+    synchronized void write(ByteBuffer command)
+        throws IOException
+    {
+        drain(command);
+    }
+
+    /**
+     * Write several buffers of newline terminated commands with as few
+     * gathering writes as possible.
+     * @param buffers the buffers to write.
+     * @param offset the index of the first buffer to write.
+     * @param length the number of buffers to write.
+     * @throws IOException in case of a network problem.
+     */
+    synchronized void write(ByteBuffer[] buffers, int offset, int length)
+        throws IOException
+    {
+        int end = offset + length;
+        while (offset < end)
+        {
+            if (!buffers[offset].hasRemaining())
+            {
+                offset++;
+            }
+            else if (_channel.write(buffers, offset, end - offset) == 0)
+            {
+                awaitWritable();
+            }
+        }
+    }
+
+    /**
+     * Write a batch of newline terminated commands.
+     * <p>The batch is written in chunks that each end on a command boundary
+     * and are no longer than the most LCDd will accept in one read.
+     * @param commands the commands to write.
+     * @throws IOException in case of a network problem.
+     */
+    synchronized void writeBatch(ByteBuffer commands)
+        throws IOException
+    {
+        int limit = commands.limit();
+        while (commands.hasRemaining())
+        {
+            int end = chunkEnd(commands, commands.position(), _maxLength);
+
+            // Cast to Buffer so we still link against a Java 8 runtime
+            ((Buffer)commands).limit(end);
+            drain(commands);
+            ((Buffer)commands).limit(limit);
+        }
+    }
+
+    /**
+     * Find the end of the next chunk of a batch to write.
+     * @param commands the newline terminated commands, up to their limit.
+     * @param start the index of the start of the chunk.
+     * @param maxLength the most LCDd will accept in one read.
+     * @return the index just after the last command in the chunk, which is
+     * no longer than the maximum unless it holds a single longer command.
+     */
+    static int chunkEnd(ByteBuffer commands, int start, int maxLength)
+    {
+        int limit = commands.limit();
+        if (limit - start <= maxLength)
+        {
+            return limit;
+        }
+
+        int end = start + maxLength;
+        while (end > start && commands.get(end - 1) != '\n')
+        {
+            end--;
+        }
+        if (end == start)
+        {
+            // A single command longer than the limit, send it alone
+            end = start + maxLength;
+            while (end < limit && commands.get(end - 1) != '\n')
+            {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Write everything remaining in the buffer to the socket.
+     * @param buffer the data to write.
+     * @throws IOException in case of a network problem.
+     */
+    private void drain(ByteBuffer buffer)
+        throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (_channel.write(buffer) == 0)
+            {
+                awaitWritable();
+            }
+        }
+    }
+
+    /**
+     * Block until the socket can accept more data.
+     * @throws IOException in case of a network problem.
+     */
+    private void awaitWritable()
+        throws IOException
+    {
+        Selector selector = _selector;
+        if (selector == null)
+        {
+            selector = Selector.open();
+            _channel.register(selector, SelectionKey.OP_WRITE);
+            _selector = selector;
+        }
+
+        try
+        {
+            selector.select();
+            selector.selectedKeys().clear();
+        }
+        catch (ClosedSelectorException e)
+        {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Release the resources held by this writer.
+     * <p>Not synchronized so it can wake up a writer blocked waiting for the
+     * socket to drain.
+     * @throws IOException in case of a problem closing the Selector.
+     */
+    void close()
+        throws IOException
+    {
+        Selector selector = _selector;
+        if (selector != null)
+        {
+            selector.close();
+        }
+    }
+}
@@ -65,6 +65,17 @@ public interface MenuItem
      */
     public String getData();
 
+    /** 
+     * Write the data this item needs to update itself.
+     * <p>Writes {@link #getData()} by default, implementations should
+     * override this to write their state without building a String.
+     * @param sink where to write the data.
+     */
+    public default void encodeData(ByteSink sink)
+    {
+        sink.putString(getData());
+    }
+
     /** 
      * Add this item to the Menu.
      * @return whether or not the item was added successfully.
@@ -81,13 +81,35 @@ public class NumWidget extends AbstractWidget
         return _number;
     }
 
+    /**
+     * Start changing several properties of this Widget at once.
+     * @return an Editor, call {@link Editor#apply()} to make the changes.
+     */
+    public Editor edit()
+    {
+        return new Editor(this);
+    }
+
     /**
      * Return the data this Widget needs to update itself.
      * @return the data to update this Widget.
      */
     public String getData()
     {
-        return _x + " " + _number;
+        StringSink sink = new StringSink();
+        encodeData(sink);
+        return sink.toString();
+    }
+
+    /**
+     * Write the data this Widget needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        sink.putInt(_x);
+        sink.put(' ');
+        sink.putInt(_number);
     }
 
     /**
@@ -104,8 +126,7 @@ public class NumWidget extends AbstractWidget
         try
         {
             widget = (NumWidget)screen.constructWidget(Widget.WIDGET_NUM);
-            widget.setX(x);
-            widget.setNumber(number);
+            widget.edit().x(x).number(number).apply();
         }
         catch (LCDException e)
         {
@@ -115,5 +136,85 @@ public class NumWidget extends AbstractWidget
         return widget;
     }
 
-}
+    /**
+     * Changes to several properties of a NumWidget, sent to the server
+     * as a single update.
+     */
+    public static class Editor
+        extends AbstractWidget.Editor<NumWidget.Editor>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final NumWidget _widget;
+
+        /**
+         * The new x position.
+         */
+        private int _x;
+
+        /**
+         * Whether the x position is being changed.
+         */
+        private boolean _xChanged;
 
+        /**
+         * The new Widget number.
+         */
+        private int _number;
+
+        /**
+         * Whether the Widget number is being changed.
+         */
+        private boolean _numberChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(NumWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the x position.
+         * @param x the x position.
+         * @return this Editor.
+         */
+        public Editor x(int x)
+        {
+            _x = x;
+            _xChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the Widget number.
+         * @param number the Widget number.
+         * @return this Editor.
+         */
+        public Editor number(int number)
+        {
+            _number = number;
+            _numberChanged = true;
+            return this;
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            if (_xChanged)
+            {
+                _widget.setX(_x);
+            }
+            if (_numberChanged)
+            {
+                _widget.setNumber(_number);
+            }
+        }
+    }
+}
@@ -98,15 +98,28 @@ public class NumericMenuItem extends AbstractMenuItem
 
     @Override
     public String getData() {
-    	StringBuilder strb = new StringBuilder();
-    	strb.append(super.getData());
-    	strb.append(" -value ");
-    	strb.append(_value);
-    	strb.append(" -minvalue ");
-    	strb.append(_minvalue);
-    	strb.append(" -maxvalue ");
-    	strb.append(_maxvalue);
-    	return strb.toString();
+    	StringSink sink = new StringSink();
+    	encodeData(sink);
+    	return sink.toString();
+    }
+
+    @Override
+    public void encodeData(ByteSink sink) {
+    	encodeText(sink);
+    	sink.putString(" -value ");
+    	sink.putInt(_value);
+    	sink.putString(" -minvalue ");
+    	sink.putInt(_minvalue);
+    	sink.putString(" -maxvalue ");
+    	sink.putInt(_maxvalue);
+    }
+
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_UPDATE.equals(eventType)) {
+    		setValueNoUpdate(Integer.parseInt(value));
+    		fireActionPerformed();
+    	}
     }
 
     /** 
@@ -78,4 +78,99 @@ public abstract class PositionalWidget extends AbstractWidget
     {
         return getX() + " " + getY() + " ";
     }
+
+    /**
+     * Write the position, the start of this Widget's data.
+     * @param sink where to write the data.
+     */
+    protected void encodePosition(ByteSink sink)
+    {
+        sink.putInt(getX());
+        sink.put(' ');
+        sink.putInt(getY());
+        sink.put(' ');
+    }
+
+    /**
+     * Changes to the position of a Widget, and whatever else a subclass
+     * adds, sent to the server as a single update.
+     * @param <E> the type of the Editor.
+     */
+    public abstract static class Editor<E extends Editor<E>>
+        extends AbstractWidget.Editor<E>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final PositionalWidget _widget;
+
+        /**
+         * The new x position.
+         */
+        private int _x;
+
+        /**
+         * Whether the x position is being changed.
+         */
+        private boolean _xChanged;
+
+        /**
+         * The new y position.
+         */
+        private int _y;
+
+        /**
+         * Whether the y position is being changed.
+         */
+        private boolean _yChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(PositionalWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the x position.
+         * @param x the x position.
+         * @return this Editor.
+         */
+        public E x(int x)
+        {
+            _x = x;
+            _xChanged = true;
+            return self();
+        }
+
+        /**
+         * Set the y position.
+         * @param y the y position.
+         * @return this Editor.
+         */
+        public E y(int y)
+        {
+            _y = y;
+            _yChanged = true;
+            return self();
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            if (_xChanged)
+            {
+                _widget.setX(_x);
+            }
+            if (_yChanged)
+            {
+                _widget.setY(_y);
+            }
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package org.lcdproc.lcdjava;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the latest state of changed Widgets, Screens and MenuItems once per
+ * frame.
+ * <p>Changes only mark their owner as dirty, so however often a value
+ * changes between frames only the last one is written. Each frame is
+ * written as a single batch.
+ */
+class RenderScheduler implements Runnable
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(RenderScheduler.class);
+
+    /**
+     * The LCD the changes are written to.
+     */
+    private final LCD _lcd;
+
+    /**
+     * Everything waiting to be rendered, each at most once.
+     */
+    private final ConcurrentLinkedQueue<Renderable> _dirty;
+
+    /**
+     * The number of entries in the queue.
+     */
+    private final AtomicInteger _size;
+
+    /**
+     * Renders the current frame, run inside a batch.
+     */
+    private final Runnable _renderFrame;
+
+    /**
+     * The thread rendering each frame.
+     */
+    private final ScheduledExecutorService _executor;
+
+    /**
+     * Flag that tracks if we have been shut down.
+     */
+    private volatile boolean _shutdown;
+
+    /**
+     * Constructor, starts rendering straight away.
+     * @param lcd the LCD the changes are written to.
+     * @param frameMillis the time between frames (in milliseconds).
+     */
+    RenderScheduler(LCD lcd, int frameMillis)
+    {
+        _lcd = lcd;
+        _dirty = new ConcurrentLinkedQueue<>();
+        _size = new AtomicInteger();
+        _renderFrame = this::renderFrame;
+        _executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "LCDRenderScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _executor.scheduleAtFixedRate(this, frameMillis, frameMillis,
+                                      TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Render the given object with the next frame.
+     * @param renderable the object that changed.
+     * @return <code>true</code> if it will be rendered, <code>false</code>
+     * if we have been shut down and it must be written now.
+     */
+    boolean markDirty(Renderable renderable)
+    {
+        if (_shutdown)
+        {
+            return false;
+        }
+
+        if (renderable.markDirty())
+        {
+            _dirty.offer(renderable);
+            _size.incrementAndGet();
+            if (_shutdown && _dirty.remove(renderable))
+            {
+                // The last frame missed it, the caller writes it instead
+                _size.decrementAndGet();
+                renderable.clearDirty();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Render a frame if anything has changed.
+     */
+    @Override
+    public void run()
+    {
+        if (_size.get() == 0)
+        {
+            return;
+        }
+
+        try
+        {
+            _lcd.batch(_renderFrame);
+        }
+        catch (RuntimeException e)
+        {
+            // Keep rendering later frames
+            _log.error("Unable to render frame", e);
+        }
+    }
+
+    /**
+     * Render everything marked dirty before the frame started.
+     * <p>Anything changed again while rendering waits for the next frame.
+     */
+    private void renderFrame()
+    {
+        for (int count = _size.get(); count > 0; count--)
+        {
+            Renderable renderable = _dirty.poll();
+            if (renderable == null)
+            {
+                break;
+            }
+            _size.decrementAndGet();
+            renderable.render();
+        }
+    }
+
+    /**
+     * Stop rendering frames, rendering anything still waiting on the calling
+     * thread.
+     * <p>Anything marked dirty too late for the last frame is handed back
+     * to the thread that marked it to write, so nothing is left marked
+     * dirty.
+     */
+    void shutdown()
+    {
+        _shutdown = true;
+        _executor.shutdown();
+        try
+        {
+            _executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        run();
+    }
+}
@@ -0,0 +1,49 @@
+package org.lcdproc.lcdjava;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The part of a Widget, Screen or MenuItem that the {@link RenderScheduler}
+ * sends to the server once per frame rather than on every change.
+ */
+abstract class Renderable
+{
+    /**
+     * Whether this is waiting to be rendered.
+     */
+    private final AtomicBoolean _dirty = new AtomicBoolean();
+
+    /**
+     * Mark this as waiting to be rendered.
+     * @return <code>true</code> if it was not already waiting,
+     * <code>false</code> otherwise.
+     */
+    final boolean markDirty()
+    {
+        return _dirty.compareAndSet(false, true);
+    }
+
+    /**
+     * Clear the mark without sending anything.
+     */
+    final void clearDirty()
+    {
+        _dirty.set(false);
+    }
+
+    /**
+     * Clear the mark and send the latest state to the server.
+     * <p>The mark is cleared first so a change made while writing is
+     * rendered with the next frame.
+     */
+    final void render()
+    {
+        _dirty.set(false);
+        write();
+    }
+
+    /**
+     * Write the latest state to the server.
+     */
+    abstract void write();
+}
@@ -0,0 +1,93 @@
+package org.lcdproc.lcdjava;
+
+/**
+ * The reply LCDd sent to a single command.
+ * <p>LCDd answers every command with either <code>success</code> or
+ * <code>huh?</code> followed by a description of the problem.
+ */
+public class Response
+{
+    /**
+     * The command this is the reply to.
+     */
+    private final String _command;
+
+    /**
+     * The line LCDd sent.
+     */
+    private final String _message;
+
+    /**
+     * Whether LCDd accepted the command.
+     */
+    private final boolean _success;
+
+    /**
+     * The time between writing the command and reading the reply.
+     */
+    private final long _roundTrip;
+
+    /**
+     * Constructor.
+     * @param command the command this is the reply to, may be null.
+     * @param message the line LCDd sent.
+     * @param success whether LCDd accepted the command.
+     * @param roundTrip the round trip time in nanoseconds.
+     */
+    Response(String command, String message, boolean success, long roundTrip)
+    {
+        _command = command;
+        _message = message;
+        _success = success;
+        _roundTrip = roundTrip;
+    }
+
+    /**
+     * Did LCDd accept the command?
+     * @return <code>true</code> if LCDd replied <code>success</code>,
+     * <code>false</code> if it replied <code>huh?</code>.
+     */
+    public boolean isSuccess()
+    {
+        return _success;
+    }
+
+    /**
+     * Get the line LCDd sent.
+     * @return the line LCDd sent.
+     */
+    public String getMessage()
+    {
+        return _message;
+    }
+
+    /**
+     * Get the command this is the reply to.
+     * @return the command, or null if it was not recorded.
+     */
+    public String getCommand()
+    {
+        return _command;
+    }
+
+    /**
+     * Get the time between the command being written and the reply being
+     * read.
+     * @return the round trip time in nanoseconds.
+     */
+    public long getRoundTripNanos()
+    {
+        return _roundTrip;
+    }
+
+    /**
+     * Return a String representing this object.
+     * @return a String representing this object.
+     */
+    public String toString()
+    {
+        return "Command = " + _command +
+               "; message = " + _message +
+               "; round trip = " + _roundTrip + "ns";
+    }
+}
@@ -0,0 +1,205 @@
+package org.lcdproc.lcdjava;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * FIFO of commands written to LCDd that are still waiting for a reply.
+ * <p>LCDd replies to commands in the order it receives them, so each reply
+ * belongs to the oldest command still in flight. Commands must be added in
+ * exactly the order they are written to the socket.
+ * <p>Every command takes a slot, but the command text and a future are only
+ * kept when tracking is enabled, so untracked commands cost no allocation.
+ */
+class ResponseTracker
+{
+    /**
+     * The initial number of slots, always a power of two.
+     */
+    private static final int INITIAL_SIZE = 64;
+
+    /**
+     * Whether to keep the command and a future for each command.
+     */
+    private volatile boolean _enabled;
+
+    /**
+     * When each command in flight was written.
+     */
+    private long[] _sentAt;
+
+    /**
+     * The text of each command in flight, null when not tracked.
+     */
+    private String[] _commands;
+
+    /**
+     * The future for each command in flight, null when not tracked.
+     */
+    private CompletableFuture<Response>[] _futures;
+
+    /**
+     * The slot of the oldest command in flight.
+     */
+    private int _head;
+
+    /**
+     * The number of commands in flight.
+     */
+    private int _size;
+
+    /**
+     * Constructor.
+     */
+    ResponseTracker()
+    {
+        allocate(INITIAL_SIZE);
+    }
+
+    /**
+     * Set whether commands are tracked.
+     * @param enabled <code>true</code> to keep a future for each command,
+     * <code>false</code> otherwise.
+     */
+    void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    /**
+     * Are commands tracked?
+     * @return <code>true</code> if a future is kept for each command,
+     * <code>false</code> otherwise.
+     */
+    boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /**
+     * Record that a command has been written.
+     * @param command the command, may be null.
+     * @param future the future to complete with the reply, may be null.
+     */
+    synchronized void sent(String command, CompletableFuture<Response> future)
+    {
+        if (_size == _sentAt.length)
+        {
+            grow();
+        }
+        int tail = (_head + _size) & (_sentAt.length - 1);
+        _sentAt[tail] = System.nanoTime();
+        _commands[tail] = command;
+        _futures[tail] = future;
+        _size++;
+    }
+
+    /**
+     * Match a reply to the oldest command in flight.
+     * @param line the reply.
+     * @param success whether the reply reports success.
+     * @return the Response, or null if the command was not tracked and
+     * succeeded.
+     */
+    Response received(String line, boolean success)
+    {
+        long now = System.nanoTime();
+        long sentAt;
+        String command;
+        CompletableFuture<Response> future;
+
+        synchronized (this)
+        {
+            if (_size == 0)
+            {
+                return null;
+            }
+            sentAt = _sentAt[_head];
+            command = _commands[_head];
+            future = _futures[_head];
+            _commands[_head] = null;
+            _futures[_head] = null;
+            _head = (_head + 1) & (_sentAt.length - 1);
+            _size--;
+        }
+
+        Response response = null;
+        if (future != null || !success)
+        {
+            response = new Response(command, line, success, now - sentAt);
+        }
+        if (future != null)
+        {
+            future.complete(response);
+        }
+        return response;
+    }
+
+    /**
+     * Fail every command in flight, the connection has gone.
+     * @param cause the reason.
+     */
+    void fail(Throwable cause)
+    {
+        CompletableFuture<Response>[] futures;
+        synchronized (this)
+        {
+            futures = _futures;
+            allocate(INITIAL_SIZE);
+        }
+
+        for (CompletableFuture<Response> future : futures)
+        {
+            if (future != null)
+            {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Double the number of slots, keeping the commands in flight in order.
+     */
+    private void grow()
+    {
+        long[] sentAt = _sentAt;
+        String[] commands = _commands;
+        CompletableFuture<Response>[] futures = _futures;
+        int head = _head;
+
+        allocate(sentAt.length * 2);
+        for (int i = 0; i < sentAt.length; i++)
+        {
+            int slot = (head + i) & (sentAt.length - 1);
+            _sentAt[i] = sentAt[slot];
+            _commands[i] = commands[slot];
+            _futures[i] = futures[slot];
+        }
+        _head = 0;
+        _size = sentAt.length;
+    }
+
+    /**
+     * Create an array of futures for replies, Java can't create generic
+     * arrays directly.
+     * @param size the length of the array.
+     * @return the array, every entry null.
+     */
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Response>[] newFutures(int size)
+    {
+        return (CompletableFuture<Response>[])new CompletableFuture<?>[size];
+    }
+
+    /**
+     * Allocate empty slots.
+     * @param size the number of slots, a power of two.
+     */
+    private void allocate(int size)
+    {
+        _sentAt = new long[size];
+        _commands = new String[size];
+        _futures = newFutures(size);
+        _head = 0;
+        _size = 0;
+    }
+}
@@ -77,22 +77,34 @@ public class RingMenuItem extends AbstractMenuItem
         
     @Override
     public String getData() {
-    	StringBuilder strb = new StringBuilder();
-    	strb.append(super.getData());
-    	strb.append(" -value ");
-    	strb.append(_value);
-    	strb.append(" -strings \"");
+    	StringSink sink = new StringSink();
+    	encodeData(sink);
+    	return sink.toString();
+    }
+
+    @Override
+    public void encodeData(ByteSink sink) {
+    	encodeText(sink);
+    	sink.putString(" -value ");
+    	sink.putInt(_value);
+    	sink.putString(" -strings \"");
     	boolean first = true;
     	for (String item : _items) {
     		if (!first) {
-    			strb.append('\t');
+    			sink.put('\t');
     		}
-    		strb.append(item);
+    		sink.putString(item);
     		first = false;
     	}
-    	strb.append('"');
-    	
-    	return strb.toString();
+    	sink.put('"');
+    }
+
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_UPDATE.equals(eventType)) {
+    		setValueNoUpdate(Integer.parseInt(value));
+    		fireActionPerformed();
+    	}
     }
 
     /** 
@@ -1,7 +1,6 @@
 package org.lcdproc.lcdjava;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
   A Screen that can contain Widgets.
@@ -90,7 +89,7 @@ public class Screen
     /**
      * A Map of Widgets added to this Screen.
      */
-    private Map<Integer, Widget> _widgets;
+    private IntObjectMap<Widget> _widgets;
 
     /**
      * The count of widgets we have created.
@@ -100,7 +99,33 @@ public class Screen
     /**
      * Whether or not the server is listening to this screen.
      */
-    private boolean _listening;
+    private volatile boolean _listening;
+
+    /**
+     * The server's reply to the last command sent for this Screen.
+     */
+    private volatile CompletableFuture<Response> _lastResponse;
+
+    /**
+     * The last attributes, other than the priority, written for this Screen.
+     */
+    private final EncodedState _encodedState = new EncodedState();
+
+    /**
+     * The last priority written for this Screen.
+     */
+    private final EncodedState _priorityState = new EncodedState();
+
+    /**
+     * Writes this Screen's state when the render scheduler is used.
+     */
+    private final Renderable _renderable = new Renderable()
+    {
+        void write()
+        {
+            _lcd.writeScreen(Screen.this);
+        }
+    };
 
     /**
      * The heartbeat type.
@@ -145,7 +170,7 @@ public class Screen
         _lcd = lcd;
         _id = id;
         _name = name;
-        _widgets = new HashMap<>();
+        _widgets = new IntObjectMap<>();
     }
 
     /**
@@ -296,6 +321,10 @@ public class Screen
     public void setListening(boolean listening)
     {
         _listening = listening;
+        if (listening && _lcd.isDeferIgnoredUpdates())
+        {
+            _lcd.writeDeferred(this);
+        }
     }
 
     /**
@@ -308,6 +337,58 @@ public class Screen
         return _listening;
     }
 
+    /**
+     * Get the server's reply to the last command sent for this Screen.
+     * <p>Only available while response tracking is switched on.
+     * @return a future that completes with the reply, or null if no command
+     * has been tracked.
+     * @see LCD#setResponseTracking(boolean)
+     */
+    public CompletableFuture<Response> getLastResponse()
+    {
+        return _lastResponse;
+    }
+
+    /**
+     * Set the server's reply to the last command sent for this Screen.
+     * @param response the future reply, ignored if null.
+     */
+    void setLastResponse(CompletableFuture<Response> response)
+    {
+        if (response != null)
+        {
+            _lastResponse = response;
+        }
+    }
+
+    /**
+     * Get the last attributes, other than the priority, written for this
+     * Screen.
+     * @return the last attributes written.
+     */
+    EncodedState getEncodedState()
+    {
+        return _encodedState;
+    }
+
+    /**
+     * Get the last priority written for this Screen.
+     * @return the last priority written.
+     */
+    EncodedState getPriorityState()
+    {
+        return _priorityState;
+    }
+
+    /**
+     * Get the part of this Screen written by the render scheduler.
+     * @return the Renderable.
+     */
+    Renderable getRenderable()
+    {
+        return _renderable;
+    }
+
     /**
      * Update this Screen's state to the server.
      */
@@ -338,13 +419,58 @@ public class Screen
      */
     public String getData()
     {
-        return _id +
-               " -priority " + _priority +
-               " -name \"" + _name + "\"" +
-               " -duration " + _duration +
-               " -wid " + _width +
-               " -hgt " + _height +
-               " -heartbeat " + _heartbeat;
+        StringSink sink = new StringSink();
+        encodeData(sink);
+        return sink.toString();
+    }
+
+    /**
+     * Write this Screen's data in a format for writing to the LCDd server.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        encodePriority(sink);
+        putAttributes(sink);
+    }
+
+    /**
+     * Write the part of this Screen's data that sets its priority.
+     * @param sink where to write the data.
+     */
+    void encodePriority(ByteSink sink)
+    {
+        sink.putInt(_id);
+        sink.putString(" -priority ");
+        sink.putString(_priority);
+    }
+
+    /**
+     * Write this Screen's data apart from its priority.
+     * @param sink where to write the data.
+     */
+    void encodeAttributes(ByteSink sink)
+    {
+        sink.putInt(_id);
+        putAttributes(sink);
+    }
+
+    /**
+     * Append every attribute other than the id and priority.
+     * @param sink where to write the data.
+     */
+    private void putAttributes(ByteSink sink)
+    {
+        sink.putString(" -name \"");
+        sink.putString(_name);
+        sink.putString("\" -duration ");
+        sink.putInt(_duration);
+        sink.putString(" -wid ");
+        sink.putInt(_width);
+        sink.putString(" -hgt ");
+        sink.putInt(_height);
+        sink.putString(" -heartbeat ");
+        sink.putString(_heartbeat);
     }
 
     /**
@@ -370,12 +496,19 @@ public class Screen
     {
         boolean success = false;
 
-        Integer widgetId = new Integer(widget.getId());
+        int widgetId = widget.getId();
         if (!_widgets.containsKey(widgetId))
         {
             _widgets.put(widgetId, widget);
-            _lcd.write(LCD.CMD_WIDGET_ADD + _id + " " + widgetId +
-                       " " + widget.getType());
+            if (widget instanceof AbstractWidget)
+            {
+                ((AbstractWidget)widget).getEncodedState().invalidate();
+            }
+            CommandEncoder encoder =
+                startCommand(LCD.CMD_WIDGET_ADD, widget.getId());
+            encoder.put(' ');
+            encoder.putString(widget.getType());
+            _lcd.write(encoder);
             success = updateWidget(widget);
         }
 
@@ -391,31 +524,90 @@ public class Screen
     {
         boolean success = false;
 
-        Integer widgetId = new Integer(widget.getId());
-        if (_widgets.containsKey(widgetId))
+        if (_widgets.containsKey(widget.getId()))
         {
-            _lcd.write(LCD.CMD_WIDGET_SET + _id + " " + widgetId +
-                       " " + widget.getData());
+            if (!(widget instanceof AbstractWidget) ||
+                !_lcd.scheduleRender(
+                        ((AbstractWidget)widget).getRenderable()))
+            {
+                writeWidget(widget);
+            }
             success = true;
         }
 
         return success;
     }
 
+    /**
+     * Write a Widget's current state to the server, if it is still on this
+     * Screen.
+     * @param widget the Widget to write.
+     */
+    synchronized void writeWidget(Widget widget)
+    {
+        if (!_listening && _lcd.isDeferIgnoredUpdates())
+        {
+            // Held back, written once the server listens to us again
+            return;
+        }
+
+        if (_widgets.containsKey(widget.getId()))
+        {
+            CommandEncoder encoder =
+                startCommand(LCD.CMD_WIDGET_SET, widget.getId());
+            encoder.put(' ');
+            widget.encodeData(encoder);
+            if (widget instanceof AbstractWidget)
+            {
+                AbstractWidget abstractWidget = (AbstractWidget)widget;
+                abstractWidget.setLastResponse(_lcd.write(encoder,
+                        abstractWidget.getEncodedState()));
+            }
+            else
+            {
+                _lcd.write(encoder);
+            }
+        }
+    }
+
+    /**
+     * Write the current state of every Widget on this Screen.
+     * <p>Widgets whose state the server already has are skipped.
+     */
+    synchronized void writeWidgets()
+    {
+        _widgets.forEach(this::writeWidget);
+    }
+
     /**
      * Delete a Widget from this Screen.
      * @param widget the Widget to delete.
      */
     protected synchronized void removeWidget(Widget widget)
     {
-        Integer widgetId = new Integer(widget.getId());
+        int widgetId = widget.getId();
         if (_widgets.containsKey(widgetId))
         {
-            _lcd.write(LCD.CMD_WIDGET_DEL + _id + " " + widgetId);
+            _lcd.write(startCommand(LCD.CMD_WIDGET_DEL, widgetId));
             _widgets.remove(widgetId);
         }
     }
 
+    /**
+     * Start encoding a command about one of this Screen's Widgets.
+     * @param command the command.
+     * @param widgetId the id of the Widget.
+     * @return the encoder holding the start of the command.
+     */
+    private CommandEncoder startCommand(String command, int widgetId)
+    {
+        CommandEncoder encoder = CommandEncoder.start(command);
+        encoder.putInt(_id);
+        encoder.put(' ');
+        encoder.putInt(widgetId);
+        return encoder;
+    }
+
     /**
      * Create a Widget for this screen.
      * @param type the Widget type, see {@link Widget} for a list of types.
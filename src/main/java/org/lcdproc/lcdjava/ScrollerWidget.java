@@ -223,14 +223,45 @@ public class ScrollerWidget extends AbstractWidget
         return _speed;
     }
 
+    /**
+     * Start changing several properties of this Widget at once.
+     * @return an Editor, call {@link Editor#apply()} to make the changes.
+     */
+    public Editor edit()
+    {
+        return new Editor(this);
+    }
+
     /**
      * Return the data this Widget needs to update itself.
      * @return the data to update this Widget.
      */
     public String getData()
     {
-        return _left + " " + _top + " " + _right + " " + _bottom + " " +
-               _direction + " " + _speed + " \"" + stripQuotes(_text) + "\"";
+        StringSink sink = new StringSink();
+        encodeData(sink);
+        return sink.toString();
+    }
+
+    /**
+     * Write the data this Widget needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        sink.putInt(_left);
+        sink.put(' ');
+        sink.putInt(_top);
+        sink.put(' ');
+        sink.putInt(_right);
+        sink.put(' ');
+        sink.putInt(_bottom);
+        sink.put(' ');
+        sink.put(_direction);
+        sink.put(' ');
+        sink.putInt(_speed);
+        sink.put(' ');
+        sink.putQuoted(_text);
     }
 
     /**
@@ -260,13 +291,15 @@ public class ScrollerWidget extends AbstractWidget
         {
             widget = (ScrollerWidget)screen.constructWidget(
                     WIDGET_SCROLLER);
-            widget.setLeft(left);
-            widget.setTop(top);
-            widget.setRight(right);
-            widget.setBottom(bottom);
-            widget.setDirection(direction);
-            widget.setSpeed(speed);
-            widget.setText(text);
+            widget.edit()
+                  .left(left)
+                  .top(top)
+                  .right(right)
+                  .bottom(bottom)
+                  .direction(direction)
+                  .speed(speed)
+                  .text(text)
+                  .apply();
         }
         catch (LCDException e)
         {
@@ -275,4 +308,216 @@ public class ScrollerWidget extends AbstractWidget
 
         return widget;
     }
+
+    /**
+     * Changes to several properties of a ScrollerWidget, sent to the server
+     * as a single update.
+     */
+    public static class Editor
+        extends AbstractWidget.Editor<ScrollerWidget.Editor>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final ScrollerWidget _widget;
+
+        /**
+         * The new left position.
+         */
+        private int _left;
+
+        /**
+         * Whether the left position is being changed.
+         */
+        private boolean _leftChanged;
+
+        /**
+         * The new top position.
+         */
+        private int _top;
+
+        /**
+         * Whether the top position is being changed.
+         */
+        private boolean _topChanged;
+
+        /**
+         * The new right position.
+         */
+        private int _right;
+
+        /**
+         * Whether the right position is being changed.
+         */
+        private boolean _rightChanged;
+
+        /**
+         * The new bottom position.
+         */
+        private int _bottom;
+
+        /**
+         * Whether the bottom position is being changed.
+         */
+        private boolean _bottomChanged;
+
+        /**
+         * The new direction.
+         */
+        private char _direction;
+
+        /**
+         * Whether the direction is being changed.
+         */
+        private boolean _directionChanged;
+
+        /**
+         * The new speed.
+         */
+        private int _speed;
+
+        /**
+         * Whether the speed is being changed.
+         */
+        private boolean _speedChanged;
+
+        /**
+         * The new Widget text.
+         */
+        private String _text;
+
+        /**
+         * Whether the Widget text is being changed.
+         */
+        private boolean _textChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(ScrollerWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the left position.
+         * @param left the left position.
+         * @return this Editor.
+         */
+        public Editor left(int left)
+        {
+            _left = left;
+            _leftChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the top position.
+         * @param top the top position.
+         * @return this Editor.
+         */
+        public Editor top(int top)
+        {
+            _top = top;
+            _topChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the right position.
+         * @param right the right position.
+         * @return this Editor.
+         */
+        public Editor right(int right)
+        {
+            _right = right;
+            _rightChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the bottom position.
+         * @param bottom the bottom position.
+         * @return this Editor.
+         */
+        public Editor bottom(int bottom)
+        {
+            _bottom = bottom;
+            _bottomChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the direction.
+         * @param direction the direction.
+         * @return this Editor.
+         */
+        public Editor direction(char direction)
+        {
+            _direction = direction;
+            _directionChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the speed.
+         * @param speed the speed.
+         * @return this Editor.
+         */
+        public Editor speed(int speed)
+        {
+            _speed = speed;
+            _speedChanged = true;
+            return this;
+        }
+
+        /**
+         * Set the Widget text.
+         * @param text the Widget text.
+         * @return this Editor.
+         */
+        public Editor text(String text)
+        {
+            _text = text;
+            _textChanged = true;
+            return this;
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            if (_leftChanged)
+            {
+                _widget.setLeft(_left);
+            }
+            if (_topChanged)
+            {
+                _widget.setTop(_top);
+            }
+            if (_rightChanged)
+            {
+                _widget.setRight(_right);
+            }
+            if (_bottomChanged)
+            {
+                _widget.setBottom(_bottom);
+            }
+            if (_directionChanged)
+            {
+                _widget.setDirection(_direction);
+            }
+            if (_speedChanged)
+            {
+                _widget.setSpeed(_speed);
+            }
+            if (_textChanged)
+            {
+                _widget.setText(_text);
+            }
+        }
+    }
 }
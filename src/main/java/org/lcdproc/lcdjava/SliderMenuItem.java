@@ -66,22 +66,33 @@ public class SliderMenuItem extends NumericMenuItem
     }
 
     @Override
-    public String getData() {
-    	StringBuilder strb = new StringBuilder();
-    	strb.append(super.getData());
-    	strb.append(" -stepsize ");
-    	strb.append(_stepsize);
+    public void encodeData(ByteSink sink) {
+    	super.encodeData(sink);
+    	sink.putString(" -stepsize ");
+    	sink.putInt(_stepsize);
     	if (!_mintext.isEmpty()) {
-        	strb.append(" -mintext \"");
-        	strb.append(_mintext);
-        	strb.append('"');
+    		sink.putString(" -mintext \"");
+    		sink.putString(_mintext);
+    		sink.put('"');
     	}
     	if (!_maxtext.isEmpty()) {
-        	strb.append(" -maxtext \"");
-        	strb.append(_maxtext);
-        	strb.append('"');
+    		sink.putString(" -maxtext \"");
+    		sink.putString(_maxtext);
+    		sink.put('"');
+    	}
+    }
+
+    @Override
+    protected void handleEvent(String eventType, String value) {
+    	if (LCD.EVENT_PLUS.equals(eventType) || LCD.EVENT_MINUS.equals(eventType)) {
+    		int v = Integer.parseInt(value);
+    		if (v != getValue()) {
+    			setValueNoUpdate(v);
+    			fireActionPerformed();
+    		}
+    	} else {
+    		super.handleEvent(eventType, value);
     	}
-    	return strb.toString();
     }
 
     /** 
@@ -0,0 +1,74 @@
+package org.lcdproc.lcdjava;
+
+/**
+ * ByteSink that builds a String, used to implement <code>getData()</code>.
+ */
+class StringSink implements ByteSink
+{
+    /**
+     * The text built so far.
+     */
+    private final StringBuilder _text = new StringBuilder();
+
+    /**
+     * Append a single character.
+     * @param c the character.
+     */
+    public void put(char c)
+    {
+        _text.append(c);
+    }
+
+    /**
+     * Append the decimal representation of a number.
+     * @param value the number.
+     */
+    public void putInt(int value)
+    {
+        _text.append(value);
+    }
+
+    /**
+     * Append some text exactly as given.
+     * @param text the text.
+     */
+    public void putString(String text)
+    {
+        _text.append(text);
+    }
+
+    /**
+     * Append some text surrounded by double quotes, leaving out any quotes
+     * in the text itself.
+     * @param text the text.
+     */
+    public void putQuoted(String text)
+    {
+        _text.append('"');
+        if (text == null)
+        {
+            _text.append(text);
+        }
+        else
+        {
+            for (int i = 0; i < text.length(); i++)
+            {
+                char c = text.charAt(i);
+                if (c != '"')
+                {
+                    _text.append(c);
+                }
+            }
+        }
+        _text.append('"');
+    }
+
+    /**
+     * Return the text built so far.
+     * @return the text built so far.
+     */
+    public String toString()
+    {
+        return _text.toString();
+    }
+}
@@ -58,13 +58,34 @@ public class StringWidget extends PositionalWidget
         return _text;
     }
 
+    /**
+     * Start changing several properties of this Widget at once.
+     * @return an Editor, call {@link Editor#apply()} to make the changes.
+     */
+    public Editor edit()
+    {
+        return new Editor(this);
+    }
+
     /**
      * Return the data this Widget needs to update itself.
      * @return the data to update this Widget.
      */
     public String getData()
     {
-        return super.getData() + "\"" + stripQuotes(_text) + "\"";
+        StringSink sink = new StringSink();
+        encodeData(sink);
+        return sink.toString();
+    }
+
+    /**
+     * Write the data this Widget needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        encodePosition(sink);
+        sink.putQuoted(_text);
     }
 
     /**
@@ -85,9 +106,7 @@ public class StringWidget extends PositionalWidget
         try
         {
             widget = (StringWidget)screen.constructWidget(Widget.WIDGET_STRING);
-            widget.setX(x);
-            widget.setY(y);
-            widget.setText(text);
+            widget.edit().x(x).y(y).text(text).apply();
         }
         catch (LCDException e)
         {
@@ -96,5 +115,61 @@ public class StringWidget extends PositionalWidget
 
         return widget;
     }
-}
 
+    /**
+     * Changes to several properties of a StringWidget, sent to the server
+     * as a single update.
+     */
+    public static class Editor
+        extends PositionalWidget.Editor<StringWidget.Editor>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final StringWidget _widget;
+
+        /**
+         * The new Widget text.
+         */
+        private String _text;
+
+        /**
+         * Whether the Widget text is being changed.
+         */
+        private boolean _textChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(StringWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the Widget text.
+         * @param text the Widget text.
+         * @return this Editor.
+         */
+        public Editor text(String text)
+        {
+            _text = text;
+            _textChanged = true;
+            return this;
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            super.applyChanges();
+            if (_textChanged)
+            {
+                _widget.setText(_text);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.lcdproc.lcdjava;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -20,6 +21,13 @@ public class Submenu extends AbstractMenuItem
      * A Map of MenuItems added to this Submenu.
      */
     private Map<String, MenuItem> _menuItems;
+
+    /** 
+     * Every active MenuItem in the whole menu tree, indexed by id.
+     * <p>Shared by the root menu and all of its Submenus so menu events can
+     * be dispatched with a single lookup.
+     */
+    private final Map<String, MenuItem> _index;
     
     /** 
      * The count of menu items we have created.
@@ -37,6 +45,8 @@ public class Submenu extends AbstractMenuItem
         super(id, menu);
         _lcd = lcd;
         _menuItems = new HashMap<String, MenuItem>();
+        _index = (menu == null) ? new ConcurrentHashMap<String, MenuItem>() :
+                                  menu._index;
     }
 
 	public Submenu(LCD lcd) {
@@ -53,6 +63,15 @@ public class Submenu extends AbstractMenuItem
         return MENUITEM_MENU;
     }
 
+    /** 
+     * Write the data this Submenu needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        encodeText(sink);
+    }
+
     /** 
      * Construct a new Submenu.
      * @param menu the Submenu that owns the submenu.
@@ -146,8 +165,16 @@ public class Submenu extends AbstractMenuItem
 	        if (!_menuItems.containsKey(itemId))
 	        {
 	            _menuItems.put(itemId, item);
-	            _lcd.write(LCD.CMD_MENU_ADD + "\"" + _id + "\"" + " " + itemId +
-	                       " " + item.getType() + " \"\"");
+	            _index.put(itemId, item);
+	            if (item instanceof AbstractMenuItem)
+	            {
+	                ((AbstractMenuItem)item).getEncodedState().invalidate();
+	            }
+	            CommandEncoder encoder = startCommand(LCD.CMD_MENU_ADD, itemId);
+	            encoder.put(' ');
+	            encoder.putString(item.getType());
+	            encoder.putString(" \"\"");
+	            _lcd.write(encoder);
 	            success = updateItem(item);
 	        }
         }
@@ -168,14 +195,46 @@ public class Submenu extends AbstractMenuItem
         synchronized (this) {
 	        if (_menuItems.containsKey(itemId))
 	        {
-	            _lcd.write(LCD.CMD_MENU_SET + "\"" + _id + "\"" + " " + itemId +
-	                       " " + item.getData());
+	            if (!(item instanceof AbstractMenuItem) ||
+	                !_lcd.scheduleRender(
+	                        ((AbstractMenuItem)item).getRenderable()))
+	            {
+	                writeItem(item);
+	            }
 	            success = true;
 	        }
         }
 
         return success;
     }
+
+    /** 
+     * Write a MenuItem's current state to the server, if it is still on
+     * this Submenu.
+     * @param item the MenuItem to write.
+     */
+    void writeItem(MenuItem item)
+    {
+        String itemId = item.getID();
+        synchronized (this) {
+	        if (_menuItems.containsKey(itemId))
+	        {
+	            CommandEncoder encoder = startCommand(LCD.CMD_MENU_SET, itemId);
+	            encoder.put(' ');
+	            item.encodeData(encoder);
+	            if (item instanceof AbstractMenuItem)
+	            {
+	                AbstractMenuItem menuItem = (AbstractMenuItem)item;
+	                menuItem.setLastResponse(_lcd.write(encoder,
+	                        menuItem.getEncodedState()));
+	            }
+	            else
+	            {
+	                _lcd.write(encoder);
+	            }
+	        }
+        }
+    }
     
     /** 
      * Delete a MenuItem from this Submenu.
@@ -187,12 +246,60 @@ public class Submenu extends AbstractMenuItem
         synchronized (this) {
 	        if (_menuItems.containsKey(itemId))
 	        {
-	            _lcd.write(LCD.CMD_MENU_DEL + "\"" + _id + "\"" + " " + itemId);
+	            _lcd.write(startCommand(LCD.CMD_MENU_DEL, itemId));
 	            _menuItems.remove(itemId);
+	            unindex(item);
 	        }
         }
     }
 
+    /** 
+     * Start encoding a command about one of this Submenu's items.
+     * @param command the command.
+     * @param itemId the id of the item.
+     * @return the encoder holding the start of the command.
+     */
+    private CommandEncoder startCommand(String command, String itemId)
+    {
+        CommandEncoder encoder = CommandEncoder.start(command);
+        encoder.put('"');
+        encoder.putString(_id);
+        encoder.put('"');
+        encoder.put(' ');
+        encoder.putString(itemId);
+        return encoder;
+    }
+
+    /** 
+     * Remove an item, and everything under it, from the index.
+     * <p>LCDd removes the contents of a menu along with the menu.
+     * @param item the item to remove.
+     */
+    private void unindex(MenuItem item)
+    {
+        _index.remove(item.getID());
+        if (item instanceof Submenu)
+        {
+            Submenu submenu = (Submenu)item;
+            synchronized (submenu) {
+                for (MenuItem child : submenu._menuItems.values())
+                {
+                    submenu.unindex(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find an active menu item anywhere in this menu tree.
+     * @param id the id of the menu item.
+     * @return the MenuItem, or null if there is no such active item.
+     */
+    MenuItem findMenuItem(String id)
+    {
+        return _index.get(id);
+    }
+
     /**
      * Return menu item with the given id
      * @param id the id of the menu item
@@ -58,13 +58,33 @@ public class TitleWidget extends AbstractWidget
         return _text;
     }
 
+    /**
+     * Start changing several properties of this Widget at once.
+     * @return an Editor, call {@link Editor#apply()} to make the changes.
+     */
+    public Editor edit()
+    {
+        return new Editor(this);
+    }
+
     /**
      * Return the data this Widget needs to update itself.
      * @return the data to update this Widget.
      */
     public String getData()
     {
-        return "\"" + stripQuotes(_text) + "\"";
+        StringSink sink = new StringSink();
+        encodeData(sink);
+        return sink.toString();
+    }
+
+    /**
+     * Write the data this Widget needs to update itself.
+     * @param sink where to write the data.
+     */
+    public void encodeData(ByteSink sink)
+    {
+        sink.putQuoted(_text);
     }
 
     /**
@@ -80,7 +100,7 @@ public class TitleWidget extends AbstractWidget
         try
         {
             widget = (TitleWidget)screen.constructWidget(WIDGET_TITLE);
-            widget.setText(text);
+            widget.edit().text(text).apply();
         }
         catch (LCDException e)
         {
@@ -90,5 +110,59 @@ public class TitleWidget extends AbstractWidget
         return widget;
     }
 
-}
+    /**
+     * Changes to several properties of a TitleWidget, sent to the server
+     * as a single update.
+     */
+    public static class Editor
+        extends AbstractWidget.Editor<TitleWidget.Editor>
+    {
+        /**
+         * The Widget being edited.
+         */
+        private final TitleWidget _widget;
+
+        /**
+         * The new Widget text.
+         */
+        private String _text;
 
+        /**
+         * Whether the Widget text is being changed.
+         */
+        private boolean _textChanged;
+
+        /**
+         * Constructor.
+         * @param widget the Widget being edited.
+         */
+        protected Editor(TitleWidget widget)
+        {
+            super(widget);
+            _widget = widget;
+        }
+
+        /**
+         * Set the Widget text.
+         * @param text the Widget text.
+         * @return this Editor.
+         */
+        public Editor text(String text)
+        {
+            _text = text;
+            _textChanged = true;
+            return this;
+        }
+
+        /**
+         * Make the changes to the Widget.
+         */
+        protected void applyChanges()
+        {
+            if (_textChanged)
+            {
+                _widget.setText(_text);
+            }
+        }
+    }
+}
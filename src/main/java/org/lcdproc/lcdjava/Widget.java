@@ -67,6 +67,18 @@ public interface Widget
      */
     public String getData();
 
+    /** 
+     * Write the data this Widget needs to update itself.
+     * <p>Called for every update. Writes {@link #getData()} by default,
+     * implementations should override this to write their state directly
+     * rather than building Strings.
+     * @param sink where to write the data.
+     */
+    public default void encodeData(ByteSink sink)
+    {
+        sink.putString(getData());
+    }
+
     /** 
      * Add this Widget to the Screen that constructed us.
      * @return whether or not the widget was added successfully.
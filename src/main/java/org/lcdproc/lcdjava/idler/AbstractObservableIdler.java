@@ -0,0 +1,66 @@
+package org.lcdproc.lcdjava.idler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.lcdproc.lcdjava.LCDException;
+import org.w3c.dom.Element;
+
+/**
+ * An AbstractIdler that announces changes to its text and validity.
+ * <p>Subclasses must call {@link #fireIdlerChanged()} after every change,
+ * as they are no longer polled. Idlers that can't tell when they change
+ * should extend AbstractIdler instead.
+ */
+public abstract class AbstractObservableIdler extends AbstractIdler
+    implements ObservableIdler
+{
+    /**
+     * The IdlerListeners to tell about changes.
+     */
+    private final List<IdlerListener> _listeners =
+        new CopyOnWriteArrayList<>();
+
+    /**
+     * Public constructor.
+     * @param config the XML element for this Idler.
+     * @param name the name of the Idler.
+     * @throws LCDException if there was a problem.
+     */
+    public AbstractObservableIdler(Element config, String name)
+        throws LCDException
+    {
+        super(config, name);
+    }
+
+    /**
+     * Add an IdlerListener.
+     * @param listener the IdlerListener.
+     */
+    public void addIdlerListener(IdlerListener listener)
+    {
+        _listeners.add(listener);
+    }
+
+    /**
+     * Remove an IdlerListener.
+     * @param listener the IdlerListener.
+     * @return <code>true</code> if the IdlerListener was removed,
+     * <code>false</code> otherwise.
+     */
+    public boolean removeIdlerListener(IdlerListener listener)
+    {
+        return _listeners.remove(listener);
+    }
+
+    /**
+     * Tell every IdlerListener that the text or validity has changed.
+     */
+    protected void fireIdlerChanged()
+    {
+        for (IdlerListener listener : _listeners)
+        {
+            listener.idlerChanged(this);
+        }
+    }
+}
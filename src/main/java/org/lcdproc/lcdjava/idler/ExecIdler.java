@@ -1,8 +1,13 @@
 package org.lcdproc.lcdjava.idler;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.lcdproc.lcdjava.LCDException;
 import org.slf4j.Logger;
@@ -11,11 +16,19 @@ import org.w3c.dom.Element;
 
 /**
  * Display the results of executing a program.
+ * <p>The program is run every <code>update</code> minutes and its output
+ * replaces the text from the previous run. Only the last
+ * {@link #BUFF_SIZE} characters of output are kept, and a run that takes
+ * longer than <code>timeout</code> seconds (default
+ * {@link #DEFAULT_TIMEOUT}) is killed.
+ * <p>ExecIdlers running the same program share its output through
+ * {@link #getResultCache()}, so the program runs at most once per
+ * <code>update</code> period however many displays show it.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: ExecIdler.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
  */
-public class ExecIdler extends AbstractIdler
+public class ExecIdler extends AbstractObservableIdler
 {
     /**
      * Version details.
@@ -26,9 +39,33 @@ public class ExecIdler extends AbstractIdler
     private static Logger _log = LoggerFactory.getLogger(ExecIdler.class);
 
     /**
-     * The size of the buffer the program's output is read into.
+     * The most characters of the program's output that are kept.
+     */
+    public static final int BUFF_SIZE = 4000;
+
+    /**
+     * How long a run may take before it is killed (in seconds), unless
+     * configured.
      */
-    private static final int BUFF_SIZE = 4000;
+    public static final int DEFAULT_TIMEOUT = 30;
+
+    /**
+     * The most programs whose output is shared between ExecIdlers.
+     */
+    public static final int CACHE_SIZE = 64;
+
+    /**
+     * The output of each program, shared by every ExecIdler running it.
+     */
+    private static final IdlerCache<String> RESULTS =
+        new IdlerCache<>(CACHE_SIZE);
+
+    /**
+     * Kills runs that take too long, on a thread of its own so widget
+     * updates blocked on a slow LCDd can't hold it up.
+     */
+    private static final ScheduledThreadPoolExecutor WATCHDOG =
+        createWatchdog();
 
     /**
      * Pad the display to enhance readability.
@@ -36,29 +73,56 @@ public class ExecIdler extends AbstractIdler
     private static final String PADDING = "  ***  ";
 
     /**
-     * The text to display.
+     * Where the program's error output goes.
+     */
+    private static final File DISCARD = new File(
+            System.getProperty("os.name").startsWith("Windows") ?
+            "NUL" : "/dev/null");
+
+    /**
+     * The text to display, replaced in one go after each successful run.
      */
-    private final StringBuffer _text = new StringBuffer();
+    private volatile String _text = "";
 
     /**
      * The name of the program to execute.
      */
     private String _program;
 
+    /**
+     * Identifies the program and how it is run in the shared cache.
+     */
+    private final String _key;
+
+    /**
+     * The program and its arguments.
+     */
+    private final String[] _command;
+
     /**
      * Does this Idler have anything to display?
      */
-    private boolean _valid;
+    private volatile boolean _valid;
 
     /**
-     * How often to update this feed in minutes.
+     * How often to update this feed in milliseconds.
      */
     private int _update;
 
     /**
-     * The Runtime object.
+     * How long a run may take before it is killed (in milliseconds).
+     */
+    private final int _timeout;
+
+    /**
+     * Flag that tracks if we are alive or not.
      */
-    private static Runtime _runtime = Runtime.getRuntime();
+    private boolean _alive = true;
+
+    /**
+     * The program while it is running, null otherwise.
+     */
+    private Process _process;
 
     /**
      * Public constructor, read the text from the config.
@@ -72,49 +136,136 @@ public class ExecIdler extends AbstractIdler
         super(config, name);
 
         _program = config.getAttribute("program");
-        if (_program == null)
+        if (_program == null || _program.trim().length() == 0)
         {
             throw new LCDException("Expected 'program' parameter");
         }
+        _command = _program.trim().split("\\s+");
         String update = config.getAttribute("update");
         _update = Integer.parseInt(update) *
                   IdlerLoader.ONE_SECOND *
                   IdlerLoader.ONE_MINUTE;
+        String timeout = config.getAttribute("timeout");
+        _timeout = (timeout.length() == 0 ?
+                    DEFAULT_TIMEOUT : Integer.parseInt(timeout)) *
+                   IdlerLoader.ONE_SECOND;
+        _key = String.join(" ", _command) + "; timeout = " + _timeout;
 
-        ExecUpdater updater = new ExecUpdater();
-        Thread thread = new Thread(updater);
+        Thread thread = new Thread(new ExecUpdater(), "ExecIdler-" + name);
+        thread.setDaemon(true);
         thread.start();
     }
 
     /**
-     * Re-read the feed from the given URL.
+     * Create the thread that kills runs that take too long.
+     * @return the watchdog.
+     */
+    private static ScheduledThreadPoolExecutor createWatchdog()
+    {
+        ScheduledThreadPoolExecutor watchdog =
+            new ScheduledThreadPoolExecutor(1, runnable ->
+        {
+            Thread thread = new Thread(runnable, "ExecIdlerWatchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Almost every run finishes in time and cancels its kill
+        watchdog.setRemoveOnCancelPolicy(true);
+        return watchdog;
+    }
+
+    /**
+     * Replace the text with the program's output, which may come from
+     * another ExecIdler running the same program.
      * @return <code>true</code> if success, <code>false</code> otherwise.
      */
     private boolean execute()
+    {
+        String text = RESULTS.get(_key, _update, this::run);
+        if (text != null)
+        {
+            _text = text;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Run the program.
+     * <p>A run killed because it took too long or because we were destroyed
+     * returns nothing, never the output read before it was killed.
+     * @return the program's output, or null if it failed.
+     * @throws CancellationException if we were destroyed, so ExecIdlers
+     * waiting for the output run the program themselves.
+     */
+    private String run()
     {
         _log.info("Executing " + _program);
-        boolean success = false;
 
-        try
+        Process proc;
+        synchronized (this)
+        {
+            if (!_alive)
+            {
+                throw new CancellationException(_program + " destroyed");
+            }
+            try
+            {
+                ProcessBuilder builder = new ProcessBuilder(_command);
+                builder.redirectError(DISCARD);
+                proc = builder.start();
+            }
+            catch (IOException e)
+            {
+                // temporary error.
+                _log.warn("Failed executing " + _program, e);
+                return null;
+            }
+            _process = proc;
+        }
+
+        // Killing the program ends the read below
+        ScheduledFuture<?> watchdog = WATCHDOG.schedule(
+                () -> kill(proc), _timeout, TimeUnit.MILLISECONDS);
+        TextRing ring = new TextRing(BUFF_SIZE);
+        String text = null;
+
+        try (Reader stdout = new InputStreamReader(proc.getInputStream()))
         {
-            synchronized (_text)
+            char[] chunk = new char[256];
+            boolean lineStart = true;
+            int count = stdout.read(chunk);
+            while (count >= 0)
             {
-                Process proc = _runtime.exec(_program);
-                BufferedReader stdout = new BufferedReader(
-                        new InputStreamReader(proc.getInputStream()));
-                String line = stdout.readLine();
-                while (line != null)
+                for (int i = 0; i < count; i++)
                 {
-                    _text.append(PADDING + line);
-                    line = stdout.readLine();
+                    char c = chunk[i];
+                    if (c == '\n' || c == '\r')
+                    {
+                        lineStart = true;
+                    }
+                    else
+                    {
+                        if (lineStart)
+                        {
+                            ring.append(PADDING);
+                            lineStart = false;
+                        }
+                        ring.append(c);
+                    }
                 }
-
-                stdout.close();
+                count = stdout.read(chunk);
             }
 
-            if (_text.length() > 0)
+            proc.waitFor();
+            if (!watchdog.cancel(false))
+            {
+                _log.warn("Killed " + _program + " after " + _timeout +
+                          " ms");
+            }
+            else if (ring.length() > 0)
             {
-                success = true;
+                text = ring.toString();
             }
         }
         catch (IOException e)
@@ -122,8 +273,56 @@ public class ExecIdler extends AbstractIdler
             // temporary error.
             _log.warn("Failed executing " + _program, e);
         }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            watchdog.cancel(false);
+            kill(proc);
+            synchronized (this)
+            {
+                _process = null;
+            }
+        }
 
-        return success;
+        if (!isAlive())
+        {
+            // destroy() may have killed it part way through
+            throw new CancellationException(_program + " destroyed");
+        }
+        return text;
+    }
+
+    /**
+     * Get the cache that shares program output between ExecIdlers.
+     * @return the cache.
+     */
+    public static IdlerCache<String> getResultCache()
+    {
+        return RESULTS;
+    }
+
+    /**
+     * Kill a run of the program if it is still going.
+     * @param proc the program.
+     */
+    private void kill(Process proc)
+    {
+        if (proc.isAlive())
+        {
+            proc.destroyForcibly();
+        }
+    }
+
+    /**
+     * Are we still alive?
+     * @return <code>true</code> if alive, <code>false</code> otherwise.
+     */
+    private synchronized boolean isAlive()
+    {
+        return _alive;
     }
 
     /**
@@ -140,16 +339,22 @@ public class ExecIdler extends AbstractIdler
      * Get the text to display.
      * @return the text to display.
      */
-    public synchronized String getDisplayText()
+    public String getDisplayText()
     {
-        return _text.toString();
+        return _text;
     }
 
     /**
-     * Idler is being destroyed, do nothing.
+     * Idler is being destroyed, kill any running program and stop updating.
      */
-    public void destroy()
+    public synchronized void destroy()
     {
+        _alive = false;
+        if (_process != null)
+        {
+            kill(_process);
+        }
+        notifyAll();
     }
 
     /**
@@ -175,25 +380,121 @@ public class ExecIdler extends AbstractIdler
         }
 
         /**
-         * Update the feed.
+         * Update the feed until the Idler is destroyed.
          */
         public void run()
         {
-            while (true)
+            while (isAlive())
             {
-                synchronized (this)
+                String text = _text;
+                boolean valid = execute();
+                if (valid != _valid || !text.equals(_text))
                 {
-                    try
-                    {
-                        _valid = execute();
-                        Thread.sleep(_update);
-                    }
-                    catch (InterruptedException e)
+                    _valid = valid;
+                    fireIdlerChanged();
+                }
+
+                synchronized (ExecIdler.this)
+                {
+                    long deadline = System.currentTimeMillis() + _update;
+                    long remaining = _update;
+                    while (_alive && remaining > 0)
                     {
-                        // Do nothing
+                        try
+                        {
+                            // destroy() wakes us up
+                            ExecIdler.this.wait(remaining);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            return;
+                        }
+                        remaining = deadline - System.currentTimeMillis();
                     }
                 }
             }
         }
     }
+
+    /**
+     * Keeps the most recent characters appended to it.
+     */
+    private static class TextRing
+    {
+        /**
+         * The characters, oldest at <code>_start</code>.
+         */
+        private final char[] _chars;
+
+        /**
+         * Where the oldest character is.
+         */
+        private int _start;
+
+        /**
+         * The number of characters held.
+         */
+        private int _length;
+
+        /**
+         * Constructor.
+         * @param capacity the most characters to keep.
+         */
+        TextRing(int capacity)
+        {
+            _chars = new char[capacity];
+        }
+
+        /**
+         * Append a character, dropping the oldest if full.
+         * @param c the character.
+         */
+        void append(char c)
+        {
+            if (_length < _chars.length)
+            {
+                _chars[(_start + _length) % _chars.length] = c;
+                _length++;
+            }
+            else
+            {
+                _chars[_start] = c;
+                _start = (_start + 1) % _chars.length;
+            }
+        }
+
+        /**
+         * Append some text, dropping the oldest characters if full.
+         * @param text the text.
+         */
+        void append(String text)
+        {
+            for (int i = 0; i < text.length(); i++)
+            {
+                append(text.charAt(i));
+            }
+        }
+
+        /**
+         * Get the number of characters held.
+         * @return the number of characters.
+         */
+        int length()
+        {
+            return _length;
+        }
+
+        /**
+         * Get the characters held, oldest first.
+         * @return the characters.
+         */
+        public String toString()
+        {
+            int head = Math.min(_length, _chars.length - _start);
+            StringBuilder text = new StringBuilder(_length);
+            text.append(_chars, _start, head);
+            text.append(_chars, 0, _length - head);
+            return text.toString();
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package org.lcdproc.lcdjava.idler;
+
+import org.lcdproc.lcdjava.LCDException;
+import org.w3c.dom.Element;
+
+/**
+ * Creates ExecIdlers, configured with <code>type="exec"</code>.
+ */
+public class ExecIdlerFactory implements IdlerFactory
+{
+    /**
+     * Get the short name used in the <code>type</code> attribute.
+     * @return "exec".
+     */
+    public String getType()
+    {
+        return "exec";
+    }
+
+    /**
+     * Get the class of the Idlers this factory creates.
+     * @return ExecIdler.
+     */
+    public Class<? extends Idler> getIdlerClass()
+    {
+        return ExecIdler.class;
+    }
+
+    /**
+     * Create a ExecIdler.
+     * @param config the XML element for this Idler.
+     * @param name the name of the Idler.
+     * @return the new ExecIdler.
+     * @throws LCDException if there was a problem.
+     */
+    public Idler createIdler(Element config, String name)
+        throws LCDException
+    {
+        return new ExecIdler(config, name);
+    }
+}
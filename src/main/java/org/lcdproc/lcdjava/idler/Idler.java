@@ -8,6 +8,8 @@ package org.lcdproc.lcdjava.idler;
  * <p>Implementations of Idler need to provide a constructor with the following
  * signature.
  * <code>Idler(Element config, String name)</code>
+ * or register an {@link IdlerFactory} so they can be created without
+ * reflection.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: Idler.java,v 1.3 2008-07-06 15:38:34 boncey Exp $
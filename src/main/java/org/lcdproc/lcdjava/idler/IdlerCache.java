@@ -0,0 +1,244 @@
+package org.lcdproc.lcdjava.idler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Shares the content of Idlers that have the same definition, so running
+ * the same Idler on several displays only does the work once.
+ * <p>Each caller says how old a value it will accept. When several callers
+ * need a fresh value at the same time only one of them loads it and the
+ * rest wait for its result. Failed loads (an exception or a null value)
+ * are not kept. A loader that gives up, by throwing a
+ * CancellationException, shares nothing and the callers waiting for it
+ * load the value themselves. The least recently used definitions are
+ * dropped once the cache is full.
+ */
+public class IdlerCache<V>
+{
+    /**
+     * The most definitions to keep.
+     */
+    private final int _maxSize;
+
+    /**
+     * The cached values, least recently used first.
+     */
+    private final LinkedHashMap<String, Entry<V>> _entries;
+
+    /**
+     * The number of requests answered without loading.
+     */
+    private final LongAdder _hits = new LongAdder();
+
+    /**
+     * The number of requests that loaded a value.
+     */
+    private final LongAdder _misses = new LongAdder();
+
+    /**
+     * Public constructor.
+     * @param maxSize the most definitions to keep.
+     */
+    public IdlerCache(int maxSize)
+    {
+        _maxSize = maxSize;
+        _entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get the value for a definition, loading it if the cached one is too
+     * old.
+     * @param key identifies the definition.
+     * @param maxAge the oldest value to accept (in milliseconds).
+     * @param loader loads a new value, may return null if it failed or
+     * throw a CancellationException if it gave up.
+     * @return the value, or null if loading it failed or this caller's
+     * loader gave up.
+     */
+    public V get(String key, long maxAge, Supplier<V> loader)
+    {
+        while (true)
+        {
+            Entry<V> entry;
+            boolean load = false;
+
+            synchronized (this)
+            {
+                entry = _entries.get(key);
+                if (entry != null &&
+                    (!entry._value.isDone() ||
+                     System.nanoTime() - entry._loadedAt < maxAge * 1000000L))
+                {
+                    // Fresh enough, or already being loaded for someone else
+                    _hits.increment();
+                }
+                else
+                {
+                    _misses.increment();
+                    entry = new Entry<>();
+                    _entries.put(key, entry);
+                    evict();
+                    load = true;
+                }
+            }
+
+            if (load)
+            {
+                return load(key, entry, loader);
+            }
+
+            try
+            {
+                return entry._value.join();
+            }
+            catch (CancellationException e)
+            {
+                // The loader gave up, load it ourselves
+            }
+            catch (CompletionException e)
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Load a value and share it with the callers waiting for it.
+     * @param key identifies the definition.
+     * @param entry the entry being loaded.
+     * @param loader loads the value.
+     * @return the value, or null if loading it failed or the loader gave up.
+     */
+    private V load(String key, Entry<V> entry, Supplier<V> loader)
+    {
+        V value = null;
+        boolean aborted = false;
+        try
+        {
+            value = loader.get();
+        }
+        catch (CancellationException e)
+        {
+            aborted = true;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                entry._loadedAt = System.nanoTime();
+                if (value == null && _entries.get(key) == entry)
+                {
+                    // Don't keep failures
+                    _entries.remove(key);
+                }
+            }
+            if (aborted)
+            {
+                // Waiters retry rather than share what we didn't load
+                entry._value.cancel(false);
+            }
+            else
+            {
+                entry._value.complete(value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drop the cached value for a definition, the next request loads it.
+     * @param key identifies the definition.
+     */
+    public synchronized void invalidate(String key)
+    {
+        _entries.remove(key);
+    }
+
+    /**
+     * Drop every cached value.
+     */
+    public synchronized void clear()
+    {
+        _entries.clear();
+    }
+
+    /**
+     * Get the number of definitions cached.
+     * @return the number of definitions.
+     */
+    public synchronized int size()
+    {
+        return _entries.size();
+    }
+
+    /**
+     * Get the number of requests answered without loading, including those
+     * that waited for another caller's load.
+     * @return the number of hits.
+     */
+    public long getHitCount()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * Get the number of requests that loaded a value.
+     * @return the number of misses.
+     */
+    public long getMissCount()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * Drop the least recently used definitions until there is room, never
+     * dropping one that is still being loaded.
+     */
+    private void evict()
+    {
+        Iterator<Map.Entry<String, Entry<V>>> i =
+            _entries.entrySet().iterator();
+        while (_entries.size() > _maxSize && i.hasNext())
+        {
+            if (i.next().getValue()._value.isDone())
+            {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Return a String representing this object.
+     * @return a String representing this object.
+     */
+    public String toString()
+    {
+        return "Size = " + size() +
+               "; hits = " + getHitCount() +
+               "; misses = " + getMissCount();
+    }
+
+    /**
+     * A cached value.
+     */
+    private static class Entry<V>
+    {
+        /**
+         * The value, completed once loaded.
+         */
+        private final CompletableFuture<V> _value = new CompletableFuture<>();
+
+        /**
+         * When the value was loaded (from {@link System#nanoTime()}), only
+         * read once the value is complete.
+         */
+        private long _loadedAt;
+    }
+}
@@ -0,0 +1,38 @@
+package org.lcdproc.lcdjava.idler;
+
+import org.lcdproc.lcdjava.LCDException;
+import org.w3c.dom.Element;
+
+/**
+ * Creates Idlers of one type without reflection.
+ * <p>Implementations are found with {@link java.util.ServiceLoader}, so they
+ * need a public no-argument constructor and an entry in
+ * <code>META-INF/services/org.lcdproc.lcdjava.idler.IdlerFactory</code>.
+ * IdlerLoader uses the factory whose type matches an idler's
+ * <code>type</code> attribute, or whose Idler class matches its
+ * <code>className</code> attribute.
+ */
+public interface IdlerFactory
+{
+    /**
+     * Get the short name used in the <code>type</code> attribute.
+     * @return the type name.
+     */
+    public String getType();
+
+    /**
+     * Get the class of the Idlers this factory creates.
+     * @return the Idler class.
+     */
+    public Class<? extends Idler> getIdlerClass();
+
+    /**
+     * Create an Idler.
+     * @param config the XML element for this Idler.
+     * @param name the name of the Idler.
+     * @return the new Idler.
+     * @throws LCDException if there was a problem.
+     */
+    public Idler createIdler(Element config, String name)
+        throws LCDException;
+}
@@ -0,0 +1,16 @@
+package org.lcdproc.lcdjava.idler;
+
+/**
+ * Interface for anything that wants to know when an ObservableIdler has new
+ * text or has become valid or invalid.
+ */
+public interface IdlerListener
+{
+    /**
+     * Called after the Idler's text or validity has changed.
+     * <p>Called on whatever thread changed the Idler, so it should return
+     * quickly.
+     * @param idler the Idler that changed.
+     */
+    public void idlerChanged(Idler idler);
+}
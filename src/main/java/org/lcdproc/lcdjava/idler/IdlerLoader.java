@@ -1,22 +1,56 @@
 package org.lcdproc.lcdjava.idler;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.lcdproc.lcdjava.LCDException;
 import org.lcdproc.lcdjava.ScrollerWidget;
+import org.lcdproc.lcdjava.util.WidgetScheduler;
 import org.lcdproc.lcdjava.util.WidgetTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 /**
  * Load implementations of Idler from an XML config.
+ * <p>Each idler element gives either a <code>type</code> registered by an
+ * {@link IdlerFactory} or the <code>className</code> of the Idler, which is
+ * only constructed by reflection if no IdlerFactory creates that class.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: IdlerLoader.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
@@ -46,6 +80,43 @@ public class IdlerLoader
      */
     private static final String NAME = "name";
 
+    /**
+     * XML config value.
+     */
+    private static final String LAZY = "lazy";
+
+    /**
+     * XML config value.
+     */
+    private static final String TYPE = "type";
+
+    /**
+     * Every registered IdlerFactory, by type and by Idler class name.
+     */
+    private static final Map<String, IdlerFactory> FACTORIES =
+        loadFactories();
+
+    /**
+     * How long an Idler may take to construct (in milliseconds).
+     */
+    public static final int LOAD_TIMEOUT = 10000;
+
+    /**
+     * The most Idlers constructed at the same time.
+     */
+    private static final int LOAD_THREADS = 4;
+
+    /**
+     * The threads that construct Idlers, they exit when idle.
+     */
+    private static final ThreadPoolExecutor LOADERS = createLoaders();
+
+    /**
+     * How long the config file must be left alone before it is reloaded
+     * (in milliseconds).
+     */
+    private static final int SETTLE = 200;
+
     /**
      * The amount of milliseconds in a second.
      */
@@ -66,6 +137,86 @@ public class IdlerLoader
      */
     private IdlerWidgetUpdater _updater;
 
+    /**
+     * The Idlers that were loaded.
+     */
+    private List<Idler> _idlers = new ArrayList<>();
+
+    /**
+     * The config key of each loaded Idler.
+     */
+    private List<String> _keys = new ArrayList<>();
+
+    /**
+     * The Widget to display each Idler upon.
+     */
+    private ScrollerWidget _scroller;
+
+    /**
+     * The Widget to display the Idler name upon.
+     */
+    private ScrollerWidget _nameWidget;
+
+    /**
+     * Watches the config file, null if not watching.
+     */
+    private ConfigWatcher _watcher;
+
+    /**
+     * Flag that tracks if we have been destroyed.
+     */
+    private boolean _destroyed;
+
+    /**
+     * Find every IdlerFactory registered with ServiceLoader.
+     * @return the factories, by type and by Idler class name.
+     */
+    private static Map<String, IdlerFactory> loadFactories()
+    {
+        Map<String, IdlerFactory> factories = new HashMap<>();
+        Iterator<IdlerFactory> i = ServiceLoader.load(IdlerFactory.class,
+                IdlerLoader.class.getClassLoader()).iterator();
+        while (true)
+        {
+            try
+            {
+                if (!i.hasNext())
+                {
+                    break;
+                }
+                IdlerFactory factory = i.next();
+                factories.put(factory.getType(), factory);
+                factories.put(factory.getIdlerClass().getName(), factory);
+            }
+            catch (ServiceConfigurationError e)
+            {
+                // Skip the broken one, the rest may still work
+                _log.error("Unable to load idler factory", e);
+            }
+        }
+        return factories;
+    }
+
+    /**
+     * Create the threads that construct Idlers.
+     * @return the executor.
+     */
+    private static ThreadPoolExecutor createLoaders()
+    {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor loaders = new ThreadPoolExecutor(
+                LOAD_THREADS, LOAD_THREADS, ONE_MINUTE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable ->
+        {
+            Thread thread = new Thread(runnable,
+                    "IdlerLoader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        loaders.allowCoreThreadTimeOut(true);
+        return loaders;
+    }
+
     /**
      * Default constructor, initialise.
      * @param doc the XML Document.
@@ -88,6 +239,22 @@ public class IdlerLoader
         load(config, scroller, name);
     }
 
+    /**
+     * Constructor, load the config file and reload it whenever it changes.
+     * @param file the XML config file.
+     * @param scroller the Widget to display each Idler upon.
+     * @param name the Widget to display the Idler name upon.
+     * @throws LCDException if there was a problem.
+     */
+    public IdlerLoader(File file,
+                       ScrollerWidget scroller,
+                       ScrollerWidget name)
+        throws LCDException
+    {
+        load(parse(file), scroller, name);
+        watch(file);
+    }
+
     /**
      * Default constructor, initialise.
      * @param config the XML config.
@@ -115,26 +282,188 @@ public class IdlerLoader
                       ScrollerWidget name)
         throws LCDException
     {
-        List idlers = loadConfig(config);
+        _scroller = scroller;
+        _nameWidget = name;
+        reload(config);
+    }
+
+    /**
+     * Load a new config, keeping the Idlers whose config hasn't changed.
+     * <p>Only added or changed Idlers are constructed and only removed or
+     * changed Idlers are destroyed, the rest keep running. The rotation
+     * switches to the new Idlers in one go without clearing the displayed
+     * text.
+     * @param config the XML config.
+     * @throws LCDException if an Idler is missing a required attribute, in
+     * which case nothing changes.
+     */
+    public synchronized void reload(Element config)
+        throws LCDException
+    {
+        if (_destroyed)
+        {
+            return;
+        }
+
+        List<IdlerConfig> configs = loadConfig(config);
+
+        Map<String, Deque<Idler>> previous = new HashMap<>();
+        for (int i = 0; i < _idlers.size(); i++)
+        {
+            previous.computeIfAbsent(_keys.get(i), k -> new ArrayDeque<>())
+                    .add(_idlers.get(i));
+        }
+
+        int kept = 0;
+        List<CompletableFuture<Idler>> pending = new ArrayList<>();
+        for (IdlerConfig idlerConfig : configs)
+        {
+            Deque<Idler> same = previous.get(idlerConfig._key);
+            Idler idler = same == null ? null : same.poll();
+            if (idler != null)
+            {
+                pending.add(CompletableFuture.completedFuture(idler));
+                kept++;
+            }
+            else
+            {
+                pending.add(idlerConfig.start());
+            }
+        }
+
+        List<Idler> idlers = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++)
+        {
+            try
+            {
+                idlers.add(pending.get(i).join());
+                keys.add(configs.get(i)._key);
+            }
+            catch (CompletionException e)
+            {
+                // Already logged, leave it out of the rotation
+            }
+        }
+        _idlers = idlers;
+        _keys = keys;
 
-        if (idlers.size() > 0)
+        if (_updater != null)
         {
-            _updater = new IdlerWidgetUpdater(scroller, name, idlers);
+            _updater.setIdlers(idlers);
+        }
+        else if (idlers.size() > 0)
+        {
+            _updater = new IdlerWidgetUpdater(_scroller, _nameWidget, idlers);
 
-            _timer = new WidgetTimer(_updater, ONE_MINUTE);
-            Thread thread = new Thread(_timer);
-            thread.start();
+            _timer = WidgetScheduler.getDefault().schedule(_updater,
+                                                           ONE_MINUTE);
+        }
+
+        // Only now they're out of the rotation
+        int removed = 0;
+        for (Deque<Idler> unused : previous.values())
+        {
+            for (Idler idler : unused)
+            {
+                idler.destroy();
+                removed++;
+            }
         }
+
+        _log.info("Loaded " + idlers.size() + " idlers, kept " + kept +
+                  ", removed " + removed);
     }
 
     /**
-     * IdlerLoader is being destroyed, kill off any threads.
+     * Load a new config file, keeping the Idlers whose config hasn't
+     * changed.
+     * @param file the XML config file.
+     * @throws LCDException if the file can't be read or parsed, or an Idler
+     * is missing a required attribute, in which case nothing changes.
+     * @see #reload(Element)
      */
-    public void destroy()
+    public void reload(File file)
+        throws LCDException
     {
+        reload(parse(file));
+    }
+
+    /**
+     * Reload the config file whenever it changes, until destroyed.
+     * <p>A config that can't be loaded is logged and the current Idlers
+     * carry on.
+     * @param file the XML config file.
+     * @throws LCDException if the file can't be watched.
+     */
+    public synchronized void watch(File file)
+        throws LCDException
+    {
+        if (_watcher != null)
+        {
+            throw new LCDException("Already watching " + _watcher._file);
+        }
+
+        try
+        {
+            _watcher = new ConfigWatcher(file.toPath());
+        }
+        catch (IOException e)
+        {
+            throw new LCDException("Unable to watch " + file, e);
+        }
+        Thread thread = new Thread(_watcher, "IdlerLoader-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Read and parse a config file.
+     * @param file the XML config file.
+     * @return the config element.
+     * @throws LCDException if the file can't be read or parsed.
+     */
+    private static Element parse(File file)
+        throws LCDException
+    {
+        try
+        {
+            DocumentBuilder builder =
+                DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            return builder.parse(file).getDocumentElement();
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new LCDException("Unable to parse " + file, e);
+        }
+        catch (SAXException e)
+        {
+            throw new LCDException("Unable to parse " + file, e);
+        }
+        catch (IOException e)
+        {
+            throw new LCDException("Unable to read " + file, e);
+        }
+    }
+
+    /**
+     * IdlerLoader is being destroyed, stop updating the Idlers.
+     */
+    public synchronized void destroy()
+    {
+        _destroyed = true;
+        if (_watcher != null)
+        {
+            _watcher.close();
+        }
         if (_timer != null)
         {
             _timer.destroy();
+            _updater.destroy();
+        }
+        for (Idler idler : _idlers)
+        {
+            idler.destroy();
         }
     }
 
@@ -147,15 +476,16 @@ public class IdlerLoader
     }
 
     /**
-     * Load the configs and store the classes in the internal Map.
+     * Read the configs of the Idlers.
      * @param config the Element that holds the config.
-     * @return a List of Idlers.
-     * @throws LCDException a wrapper around any Exception thrown.
+     * @return the config of each Idler, in order.
+     * @throws LCDException if an Idler is missing a required attribute.
      */
-    private List loadConfig(Element config)
+    private List<IdlerConfig> loadConfig(Element config)
         throws LCDException
     {
-        List<Idler> idlers = new ArrayList<>();
+        boolean lazyDefault = Boolean.parseBoolean(config.getAttribute(LAZY));
+        List<IdlerConfig> configs = new ArrayList<>();
         NodeList nodes = config.getChildNodes();
 
         for (int i = 0; i < nodes.getLength(); i++)
@@ -168,11 +498,12 @@ public class IdlerLoader
                 String tagName = moduleConfig.getTagName();
                 if (IDLER_ELEMENT.equals(tagName))
                 {
+                    String type = moduleConfig.getAttribute(TYPE);
                     String className = moduleConfig.getAttribute(CLASSNAME);
-                    if (className == null || className.length() == 0)
+                    if (type.length() == 0 && className.length() == 0)
                     {
-                        throw new LCDException("Expected '" + CLASSNAME +
-                                "' attribute");
+                        throw new LCDException("Expected '" + TYPE +
+                                "' or '" + CLASSNAME + "' attribute");
                     }
                     String name = moduleConfig.getAttribute(NAME);
                     if (name == null || name.length() == 0)
@@ -181,53 +512,157 @@ public class IdlerLoader
                                 "' attribute");
                     }
 
-                    try
-                    {
-                        Idler idler = loadIdler(moduleConfig, name, className);
-                        _log.info("Loaded idler from class " + className);
-                        idlers.add(idler);
-                    }
-                    catch (ClassNotFoundException e)
-                    {
-                        throw new LCDException("'" + className +
-                                "' is not a valid class", e);
-                    }
-                    catch (InstantiationException e)
-                    {
-                        throw new LCDException
-                            ("Cannot construct class '" + className + "'", e);
-                    }
-                    catch (IllegalAccessException e)
-                    {
-                        throw new LCDException
-                            ("Cannot construct class '" + className + "'", e);
-                    }
-                    catch (IllegalArgumentException e)
-                    {
-                        throw new LCDException
-                            ("Cannot construct class '" + className + "'", e);
-                    }
-                    catch (InvocationTargetException e)
-                    {
-                        throw new LCDException
-                            ("Cannot construct class '" + className + "'",
-                             e.getCause());
-                    }
-                    catch (NoSuchMethodException e)
-                    {
-                        throw new LCDException
-                            ("Cannot construct class '" + className + "'", e);
-                    }
-                    catch (ClassCastException e)
-                    {
-                        throw new LCDException
-                            ("Class '" + className + "' is not an Idler", e);
-                    }
+                    String lazy = moduleConfig.getAttribute(LAZY);
+                    configs.add(new IdlerConfig(moduleConfig, name, type,
+                            className, lazy.length() == 0 ?
+                            lazyDefault : Boolean.parseBoolean(lazy)));
                 }
             }
         }
 
-        return idlers;
+        return configs;
+    }
+
+    /**
+     * Start constructing an Idler on the loader threads.
+     * <p>The timeout starts when the Idler is queued, so one waiting behind
+     * Idlers that hang is given up on too.
+     * @param moduleConfig the Element that holds the config.
+     * @param name the name of the Idler.
+     * @param type the type of Idler, may be empty.
+     * @param className the name of the class to instantiate, may be empty.
+     * @return a future that completes with the Idler, or exceptionally if it
+     * could not be constructed within {@link #LOAD_TIMEOUT}.
+     */
+    private static CompletableFuture<Idler> start(Element moduleConfig,
+                                                  String name,
+                                                  String type,
+                                                  String className)
+    {
+        CompletableFuture<Idler> future = new CompletableFuture<>();
+        ScheduledFuture<?> watchdog = WidgetScheduler.getDefault().schedule(
+                () -> timeout(future, name), LOAD_TIMEOUT);
+        LOADERS.execute(() ->
+        {
+            if (future.isDone())
+            {
+                // Timed out while queued
+                return;
+            }
+
+            try
+            {
+                Idler idler = construct(moduleConfig, name, type, className);
+                if (!future.complete(idler))
+                {
+                    // Too late, it has already been left out
+                    idler.destroy();
+                }
+            }
+            catch (Throwable e)
+            {
+                // Errors too, or reload() would wait for it forever
+                _log.error("Unable to load idler " + name, e);
+                future.completeExceptionally(e);
+            }
+            finally
+            {
+                watchdog.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Give up on an Idler that is taking too long to construct.
+     * @param future the future for the Idler.
+     * @param name the name of the Idler.
+     */
+    private static void timeout(CompletableFuture<Idler> future, String name)
+    {
+        if (future.completeExceptionally(new TimeoutException(name)))
+        {
+            _log.error("Gave up loading idler " + name + " after " +
+                       LOAD_TIMEOUT + " ms");
+        }
+    }
+
+    /**
+     * Construct an Idler.
+     * <p>Uses the IdlerFactory registered for the type, or for the class
+     * name, and only falls back to reflection if there is none.
+     * @param moduleConfig the Element that holds the config.
+     * @param name the name of the Idler.
+     * @param type the type of Idler, may be empty.
+     * @param className the name of the class to instantiate, may be empty.
+     * @return the Idler.
+     * @throws LCDException a wrapper around any Exception thrown.
+     */
+    private static Idler construct(Element moduleConfig,
+                                   String name,
+                                   String type,
+                                   String className)
+        throws LCDException
+    {
+        IdlerFactory factory = FACTORIES.get(type.length() > 0 ?
+                                             type : className);
+        if (factory == null && type.length() > 0)
+        {
+            if (className.length() == 0)
+            {
+                throw new LCDException("Unknown idler type '" + type + "'");
+            }
+            factory = FACTORIES.get(className);
+        }
+        if (factory != null)
+        {
+            Idler idler = factory.createIdler(moduleConfig, name);
+            _log.info("Loaded idler of type " + factory.getType());
+            return idler;
+        }
+
+        try
+        {
+            Idler idler = loadIdler(moduleConfig, name, className);
+            _log.info("Loaded idler from class " + className);
+            return idler;
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new LCDException("'" + className +
+                    "' is not a valid class", e);
+        }
+        catch (InstantiationException e)
+        {
+            throw new LCDException
+                ("Cannot construct class '" + className + "'", e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new LCDException
+                ("Cannot construct class '" + className + "'", e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new LCDException
+                ("Cannot construct class '" + className + "'", e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new LCDException
+                ("Cannot construct class '" + className + "'",
+                 e.getCause());
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new LCDException
+                ("Cannot construct class '" + className + "'", e);
+        }
+        catch (ClassCastException e)
+        {
+            throw new LCDException
+                ("Class '" + className + "' is not an Idler", e);
+        }
     }
 
     /**
@@ -244,7 +679,9 @@ public class IdlerLoader
      * @throws NoSuchMethodException in the event of a problem.
      * @throws ClassCastException in the event of a problem.
      */
-    private Idler loadIdler(Element moduleConfig, String name, String className)
+    private static Idler loadIdler(Element moduleConfig,
+                                   String name,
+                                   String className)
         throws ClassNotFoundException,
                InstantiationException,
                IllegalAccessException,
@@ -263,4 +700,204 @@ public class IdlerLoader
         Constructor constructor = c.getConstructor(types);
         return (Idler)constructor.newInstance(args);
     }
+
+    /**
+     * The config of one Idler.
+     */
+    private static class IdlerConfig
+    {
+        /**
+         * A copy of the Element that holds the config.
+         */
+        private final Element _config;
+
+        /**
+         * The name of the Idler.
+         */
+        private final String _name;
+
+        /**
+         * The type of Idler, may be empty.
+         */
+        private final String _type;
+
+        /**
+         * The name of the class to instantiate, may be empty.
+         */
+        private final String _className;
+
+        /**
+         * Whether to construct the Idler when first displayed.
+         */
+        private final boolean _lazy;
+
+        /**
+         * Identifies the config, Idlers with the same key are
+         * interchangeable.
+         */
+        private final String _key;
+
+        /**
+         * Constructor.
+         * @param config the Element that holds the config.
+         * @param name the name of the Idler.
+         * @param type the type of Idler, may be empty.
+         * @param className the name of the class to instantiate, may be
+         * empty.
+         * @param lazy whether to construct the Idler when first displayed.
+         */
+        IdlerConfig(Element config,
+                    String name,
+                    String type,
+                    String className,
+                    boolean lazy)
+        {
+            // The DOM isn't thread safe, give each Idler its own copy
+            _config = (Element)config.cloneNode(true);
+            _name = name;
+            _type = type;
+            _className = className;
+            _lazy = lazy;
+
+            List<String> attributes = new ArrayList<>();
+            NamedNodeMap map = config.getAttributes();
+            for (int i = 0; i < map.getLength(); i++)
+            {
+                Node attribute = map.item(i);
+                attributes.add(attribute.getNodeName() + "=" +
+                               attribute.getNodeValue());
+            }
+            Collections.sort(attributes);
+            _key = attributes + "; text = " + config.getTextContent() +
+                   "; lazy = " + lazy;
+        }
+
+        /**
+         * Start constructing the Idler, or a LazyIdler standing in for it.
+         * @return a future that completes with the Idler.
+         */
+        CompletableFuture<Idler> start()
+        {
+            if (_lazy)
+            {
+                return CompletableFuture.completedFuture(
+                        new LazyIdler(_name, () ->
+                            IdlerLoader.start(_config, _name, _type,
+                                              _className)));
+            }
+            return IdlerLoader.start(_config, _name, _type, _className);
+        }
+    }
+
+    /**
+     * Thread that reloads the config file when it changes.
+     */
+    private class ConfigWatcher implements Runnable
+    {
+        /**
+         * The config file.
+         */
+        private final Path _file;
+
+        /**
+         * Watches the directory holding the config file.
+         */
+        private final WatchService _watchService;
+
+        /**
+         * Constructor.
+         * @param file the config file.
+         * @throws IOException if the directory can't be watched.
+         */
+        ConfigWatcher(Path file)
+            throws IOException
+        {
+            _file = file.toAbsolutePath();
+            _watchService = _file.getFileSystem().newWatchService();
+            _file.getParent().register(_watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+
+        /**
+         * Reload the config each time it changes, until closed.
+         */
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    boolean changed = changed(_watchService.take());
+                    // Editors often save in several steps, wait for the last
+                    WatchKey key = _watchService.poll(SETTLE,
+                                                      TimeUnit.MILLISECONDS);
+                    while (key != null)
+                    {
+                        changed |= changed(key);
+                        key = _watchService.poll(SETTLE,
+                                                 TimeUnit.MILLISECONDS);
+                    }
+
+                    if (changed)
+                    {
+                        try
+                        {
+                            reload(_file.toFile());
+                        }
+                        catch (LCDException e)
+                        {
+                            _log.error("Unable to reload " + _file +
+                                       ", keeping the current idlers", e);
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Do nothing
+            }
+            catch (ClosedWatchServiceException e)
+            {
+                // Destroyed
+            }
+
+            _log.debug("Terminating");
+        }
+
+        /**
+         * Check whether the events of a WatchKey include the config file.
+         * @param key the WatchKey.
+         * @return <code>true</code> if the config file changed,
+         * <code>false</code> otherwise.
+         */
+        private boolean changed(WatchKey key)
+        {
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (_file.getFileName().equals(event.context()))
+                {
+                    changed = true;
+                }
+            }
+            key.reset();
+            return changed;
+        }
+
+        /**
+         * Stop watching.
+         */
+        void close()
+        {
+            try
+            {
+                _watchService.close();
+            }
+            catch (IOException e)
+            {
+                _log.warn("Unable to stop watching " + _file, e);
+            }
+        }
+    }
 }
@@ -6,10 +6,16 @@ import org.lcdproc.lcdjava.Widget;
 import org.lcdproc.lcdjava.util.WidgetTimer;
 import org.lcdproc.lcdjava.util.WidgetUpdater;
 
+import java.util.BitSet;
 import java.util.List;
 
 /**
  * ScrollerWidget that updates a Widget with the text of the provided idler.
+ * <p>ObservableIdlers are only read when they announce a change, other
+ * Idlers are read each time they come round. Invalid Idlers are skipped.
+ * <p>If every Idler is invalid the rotation stops until an ObservableIdler
+ * becomes valid, or polls once a second if there are Idlers that can't
+ * announce changes.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: IdlerWidgetUpdater.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
@@ -22,6 +28,12 @@ public class IdlerWidgetUpdater implements WidgetUpdater
     public static final String CVSID =
         "$Id: IdlerWidgetUpdater.java,v 1.2 2005-03-03 14:13:16 boncey Exp $";
 
+    /**
+     * How long to wait when every Idler is invalid and all of them announce
+     * their changes (in milliseconds), one will wake us up before then.
+     */
+    private static final int SUSPENDED = Integer.MAX_VALUE;
+
     /**
      * The ScrollerWidget we will be updating with the idler content.
      */
@@ -33,9 +45,25 @@ public class IdlerWidgetUpdater implements WidgetUpdater
     private ScrollerWidget _name;
 
     /**
-     * The list of Idler objects to update.
+     * The Idlers to update, in display order.
      */
-    private List _idlers;
+    private Idler[] _idlers = new Idler[0];
+
+    /**
+     * What we know of each Idler.
+     */
+    private IdlerState[] _states = new IdlerState[0];
+
+    /**
+     * The Idlers that may be valid, ObservableIdlers are only included
+     * while valid, other Idlers always are.
+     */
+    private BitSet _candidates = new BitSet();
+
+    /**
+     * The number of Idlers that don't announce changes.
+     */
+    private int _polled;
 
     /**
      * The index of the last Idler displayed.
@@ -49,6 +77,17 @@ public class IdlerWidgetUpdater implements WidgetUpdater
      */
     private String _displayedText;
 
+    /**
+     * The timer driving the rotation, null until the first update.
+     */
+    private WidgetTimer _timer;
+
+    /**
+     * Flag that tracks if the rotation is waiting for an Idler to become
+     * valid.
+     */
+    private boolean _suspended;
+
     /**
      * Public constructor.
      * @param content the Widget to display each Idler upon.
@@ -57,47 +96,175 @@ public class IdlerWidgetUpdater implements WidgetUpdater
      */
     public IdlerWidgetUpdater(ScrollerWidget content,
                               ScrollerWidget name,
-                              List idlers)
+                              List<? extends Idler> idlers)
     {
         _content = content;
         _name = name;
-        _idlers = idlers;
+        setIdlers(idlers);
     }
 
     /**
-     * Update the Widget by showing the next Idler.
-     * @param timer the WidgetTimer.
+     * Replace the Idlers to update.
+     * <p>The displayed text stays until the next update, which carries on
+     * from the displayed Idler if it is still in the list.
+     * @param idlers the List of Idlers to display.
      */
-    public void updateWidget(WidgetTimer timer)
+    public synchronized void setIdlers(List<? extends Idler> idlers)
     {
-        int size = _idlers.size();
-        _index++;
-        if (_index >= size)
+        Idler displayed = _index >= 0 ? _idlers[_index] : null;
+        destroy();
+
+        _idlers = new Idler[idlers.size()];
+        _states = new IdlerState[_idlers.length];
+        _candidates = new BitSet(_idlers.length);
+        _polled = 0;
+        // Carry on from the same position if the displayed Idler has gone
+        _index = Math.max(Math.min(_index, _idlers.length), 0) - 1;
+
+        for (int i = 0; i < _idlers.length; i++)
         {
-            _index = 0;
+            Idler idler = idlers.get(i);
+            _idlers[i] = idler;
+            _states[i] = new IdlerState(i);
+            if (idler == displayed)
+            {
+                _index = i;
+            }
+            if (idler instanceof ObservableIdler)
+            {
+                ((ObservableIdler)idler).addIdlerListener(_states[i]);
+                _candidates.set(i, _states[i].refresh());
+            }
+            else
+            {
+                _candidates.set(i);
+                _polled++;
+            }
         }
-        Idler idler = (Idler)_idlers.get(_index);
-        if (idler.isValid())
+
+        if (_suspended && _timer != null)
         {
-            String text = idler.getDisplayText();
-            int timeout =
-                (int)(text.length() * (_content.getSpeed() * LCD.FRAME));
-            if (!text.equals(_displayedText))
+            // One of the new Idlers may be valid
+            _suspended = false;
+            _timer.setTimeout(0);
+        }
+    }
+
+    /**
+     * Update the Widget by showing the next valid Idler.
+     * @param timer the WidgetTimer.
+     */
+    public synchronized void updateWidget(WidgetTimer timer)
+    {
+        _timer = timer;
+
+        int index = _index;
+        for (int n = _candidates.cardinality(); n > 0; n--)
+        {
+            index = _candidates.nextSetBit(index + 1);
+            if (index < 0)
             {
-                _content.setText(text);
-                _name.setText(idler.getName());
-                _displayedText = text;
+                index = _candidates.nextSetBit(0);
             }
-            // This may have been reset if another Idler failed
-            timer.setTimeout(timeout * IdlerLoader.ONE_SECOND);
+
+            IdlerState state = _states[index];
+            if (state._observable || state.refresh())
+            {
+                _index = index;
+                _suspended = false;
+                show(state);
+                timer.setTimeout(state._dwell);
+                return;
+            }
+        }
+
+        if (_polled > 0)
+        {
+            // Some Idlers can't tell us when they become valid
+            timer.setTimeout(IdlerLoader.ONE_SECOND);
         }
         else
         {
-            // Invalid Idler, set timeout to one second and try the next one
-            timer.setTimeout(1);
+            _suspended = true;
+            timer.setTimeout(SUSPENDED);
         }
     }
 
+    /**
+     * Stop listening to the Idlers.
+     */
+    public synchronized void destroy()
+    {
+        for (int i = 0; i < _idlers.length; i++)
+        {
+            if (_idlers[i] instanceof ObservableIdler)
+            {
+                ((ObservableIdler)_idlers[i]).removeIdlerListener(_states[i]);
+            }
+        }
+    }
+
+    /**
+     * An ObservableIdler has changed, show its new text straight away if it
+     * is displayed and restart the rotation if it was waiting for it.
+     * @param state the state of the Idler that changed.
+     */
+    private synchronized void changed(IdlerState state)
+    {
+        if (state._index >= _states.length || _states[state._index] != state)
+        {
+            // The Idlers were replaced while it was changing
+            return;
+        }
+
+        boolean valid = state.refresh();
+        _candidates.set(state._index, valid);
+
+        if (valid && _suspended && _timer != null)
+        {
+            _suspended = false;
+            _timer.setTimeout(0);
+        }
+        else if (state._index == _index)
+        {
+            if (valid)
+            {
+                show(state);
+            }
+            else if (_timer != null)
+            {
+                // Move on rather than keep showing stale text
+                _timer.setTimeout(0);
+            }
+        }
+    }
+
+    /**
+     * Display an Idler's text.
+     * @param state the state of the Idler.
+     */
+    private void show(IdlerState state)
+    {
+        if (!state._text.equals(_displayedText))
+        {
+            _content.setText(state._text);
+            _name.setText(_idlers[state._index].getName());
+            _displayedText = state._text;
+        }
+    }
+
+    /**
+     * Work out how long to display some text for.
+     * @param text the text.
+     * @return how long it takes to scroll past (in milliseconds), at least
+     * one second.
+     */
+    private int getTimeout(String text)
+    {
+        int timeout = (int)(text.length() * (_content.getSpeed() * LCD.FRAME));
+        return Math.max(timeout, 1) * IdlerLoader.ONE_SECOND;
+    }
+
     /**
      * Retrurn the wrapped Widget.
      * @return the Widget.
@@ -116,4 +283,67 @@ public class IdlerWidgetUpdater implements WidgetUpdater
         return "Widget = " + _content +
                "; Name = " + _name;
     }
+
+    /**
+     * What we know of an Idler, only used while holding the updater's lock.
+     */
+    private class IdlerState implements IdlerListener
+    {
+        /**
+         * The index of the Idler.
+         */
+        private final int _index;
+
+        /**
+         * Whether the Idler tells us when it changes.
+         */
+        private final boolean _observable;
+
+        /**
+         * The Idler's text, or null if it is invalid.
+         */
+        private String _text;
+
+        /**
+         * How long to display the text for (in milliseconds), worked out
+         * when the text changes.
+         */
+        private int _dwell;
+
+        /**
+         * Constructor.
+         * @param index the index of the Idler.
+         */
+        IdlerState(int index)
+        {
+            _index = index;
+            _observable = _idlers[index] instanceof ObservableIdler;
+        }
+
+        /**
+         * Read the Idler's text again.
+         * @return <code>true</code> if the Idler is valid,
+         * <code>false</code> otherwise.
+         */
+        boolean refresh()
+        {
+            Idler idler = _idlers[_index];
+            String text = idler.isValid() ? idler.getDisplayText() : null;
+            if (text != null && !text.equals(_text))
+            {
+                _dwell = getTimeout(text);
+            }
+            _text = text;
+            return text != null;
+        }
+
+        /**
+         * The Idler has changed, read it again.
+         * @param idler the Idler that changed.
+         */
+        public void idlerChanged(Idler idler)
+        {
+            changed(this);
+        }
+    }
 }
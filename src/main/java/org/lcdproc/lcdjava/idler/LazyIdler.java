@@ -0,0 +1,124 @@
+package org.lcdproc.lcdjava.idler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Stands in for an Idler that is only constructed when first displayed.
+ * <p>The first time it is asked whether it is valid it starts constructing
+ * the real Idler in the background and reports itself invalid, so the
+ * rotation moves on. Once constructed it passes everything through to the
+ * real Idler. If construction fails it stays invalid.
+ */
+class LazyIdler implements Idler
+{
+    /**
+     * The Idler name.
+     */
+    private final String _name;
+
+    /**
+     * Starts constructing the real Idler.
+     */
+    private final Supplier<CompletableFuture<Idler>> _factory;
+
+    /**
+     * The real Idler, null until first displayed.
+     */
+    private CompletableFuture<Idler> _idler;
+
+    /**
+     * Flag that tracks if we have been destroyed.
+     */
+    private boolean _destroyed;
+
+    /**
+     * Constructor.
+     * @param name the name of the Idler.
+     * @param factory starts constructing the real Idler.
+     */
+    LazyIdler(String name, Supplier<CompletableFuture<Idler>> factory)
+    {
+        _name = name;
+        _factory = factory;
+    }
+
+    /**
+     * Get the real Idler, starting to construct it if needed.
+     * @return the real Idler, or null if it isn't ready or failed.
+     */
+    private synchronized Idler getIdler()
+    {
+        if (_destroyed)
+        {
+            return null;
+        }
+        if (_idler == null)
+        {
+            _idler = _factory.get();
+        }
+
+        try
+        {
+            return _idler.getNow(null);
+        }
+        catch (CompletionException e)
+        {
+            // Already logged, stay invalid
+            return null;
+        }
+    }
+
+    /**
+     * Get the text to display.
+     * @return the text to display, or null if not ready.
+     */
+    public String getDisplayText()
+    {
+        Idler idler = getIdler();
+        return idler == null ? null : idler.getDisplayText();
+    }
+
+    /**
+     * Is there any text to display?
+     * @return <code>true</code> if the real Idler has been constructed and
+     * has anything to display, <code>false</code> otherwise.
+     */
+    public boolean isValid()
+    {
+        Idler idler = getIdler();
+        return idler != null && idler.isValid();
+    }
+
+    /**
+     * Get the name to display.
+     * @return the name to display.
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * Destroy the real Idler, once constructed if it is still being
+     * constructed.
+     */
+    public synchronized void destroy()
+    {
+        _destroyed = true;
+        if (_idler != null)
+        {
+            _idler.thenAccept(Idler::destroy);
+        }
+    }
+
+    /**
+     * Return a String representing this object.
+     * @return a String representing this object.
+     */
+    public String toString()
+    {
+        return "Name = " + _name + "; Lazy = " + _idler;
+    }
+}
@@ -0,0 +1,25 @@
+package org.lcdproc.lcdjava.idler;
+
+/**
+ * An Idler that announces changes to its text and validity, so it doesn't
+ * need to be polled.
+ * <p>Listeners are told after every change, the values returned by
+ * {@link Idler#getDisplayText()} and {@link Idler#isValid()} only change
+ * between notifications.
+ */
+public interface ObservableIdler extends Idler
+{
+    /**
+     * Add an IdlerListener.
+     * @param listener the IdlerListener.
+     */
+    public void addIdlerListener(IdlerListener listener);
+
+    /**
+     * Remove an IdlerListener.
+     * @param listener the IdlerListener.
+     * @return <code>true</code> if the IdlerListener was removed,
+     * <code>false</code> otherwise.
+     */
+    public boolean removeIdlerListener(IdlerListener listener);
+}
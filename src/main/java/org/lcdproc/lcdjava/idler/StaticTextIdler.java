@@ -9,7 +9,7 @@ import org.w3c.dom.Element;
  * @author Darren Greaves
  * @version $Id: StaticTextIdler.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
  */
-public class StaticTextIdler extends AbstractIdler
+public class StaticTextIdler extends AbstractObservableIdler
 {
     /**
      * Version details.
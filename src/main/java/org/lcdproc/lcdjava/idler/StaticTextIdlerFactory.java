@@ -0,0 +1,41 @@
+package org.lcdproc.lcdjava.idler;
+
+import org.lcdproc.lcdjava.LCDException;
+import org.w3c.dom.Element;
+
+/**
+ * Creates StaticTextIdlers, configured with <code>type="static"</code>.
+ */
+public class StaticTextIdlerFactory implements IdlerFactory
+{
+    /**
+     * Get the short name used in the <code>type</code> attribute.
+     * @return "static".
+     */
+    public String getType()
+    {
+        return "static";
+    }
+
+    /**
+     * Get the class of the Idlers this factory creates.
+     * @return StaticTextIdler.
+     */
+    public Class<? extends Idler> getIdlerClass()
+    {
+        return StaticTextIdler.class;
+    }
+
+    /**
+     * Create a StaticTextIdler.
+     * @param config the XML element for this Idler.
+     * @param name the name of the Idler.
+     * @return the new StaticTextIdler.
+     * @throws LCDException if there was a problem.
+     */
+    public Idler createIdler(Element config, String name)
+        throws LCDException
+    {
+        return new StaticTextIdler(config, name);
+    }
+}
@@ -3,11 +3,19 @@ package org.lcdproc.lcdjava.util;
 import org.lcdproc.lcdjava.StringWidget;
 import org.lcdproc.lcdjava.Widget;
 
-import java.text.DateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.ChronoUnit;
 
 /**
  * StringWidget that updates with the current time.
+ * <p>Each update sets the WidgetTimer to fire at the next minute (or second,
+ * if the format shows seconds), so there is one update per change of the
+ * displayed time. Start it with a timeout of zero, for example
+ * <code>WidgetScheduler.getDefault().schedule(updater, 0)</code>.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: ClockWidgetUpdater.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
@@ -26,32 +34,64 @@ public class ClockWidgetUpdater implements WidgetUpdater
     private StringWidget _widget;
 
     /**
-     * Store the time as a String so we only write it when it has changed.
+     * How early a timer may fire and still count as on the boundary (in
+     * milliseconds), covers drift between the wall clock and the timer.
      */
-    private String _timeString;
+    private static final int EARLY = 50;
 
     /**
-     * Public constructor.
+     * The formatter, in the default time zone.
+     */
+    private final DateTimeFormatter _formatter;
+
+    /**
+     * The smallest change in time the format shows (in milliseconds).
+     */
+    private final int _resolution;
+
+    /**
+     * Public constructor, showing the time in the short format of the
+     * default locale.
      * @param widget the Widget with which to display the clock.
      */
     public ClockWidgetUpdater(StringWidget widget)
+    {
+        this(widget, DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT));
+    }
+
+    /**
+     * Public constructor.
+     * @param widget the Widget with which to display the clock.
+     * @param formatter formats the time, may include the date.
+     */
+    public ClockWidgetUpdater(StringWidget widget, DateTimeFormatter formatter)
     {
         _widget = widget;
+        _formatter = formatter.withZone(ZoneId.systemDefault());
+
+        // Only wake up every second if the format shows seconds, probe with
+        // what updateWidget() formats so date and zone fields work too
+        Instant minute = ZonedDateTime.now(_formatter.getZone())
+                                      .truncatedTo(ChronoUnit.MINUTES)
+                                      .toInstant();
+        String start = _formatter.format(minute);
+        String later = _formatter.format(minute.plusSeconds(1));
+        _resolution = start.equals(later) ? 60000 : 1000;
     }
 
     /**
-     * Update the clock.
+     * Update the clock then set the timer to fire at the next change of the
+     * displayed time.
+     * <p>Only sent to the server when the displayed time has changed.
      * @param timer the WidgetTimer.
      */
     public void updateWidget(WidgetTimer timer)
     {
-        DateFormat fmt = DateFormat.getTimeInstance(DateFormat.SHORT);
-        String time = fmt.format(new Date());
-        if (!time.equals(_timeString))
-        {
-            _widget.setText(time);
-            _timeString = time;
-        }
+        long now = System.currentTimeMillis();
+        // Round up if the timer fired just before the boundary
+        long shown = now + EARLY;
+        _widget.setText(_formatter.format(Instant.ofEpochMilli(shown)));
+        timer.setTimeout((int)(_resolution - shown % _resolution + EARLY));
     }
 
     /**
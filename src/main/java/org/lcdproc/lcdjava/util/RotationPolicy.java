@@ -0,0 +1,16 @@
+package org.lcdproc.lcdjava.util;
+
+/**
+ * Chooses the order in which a ScreenRotator displays its Screens.
+ */
+public interface RotationPolicy
+{
+    /**
+     * Choose the Screen to display next.
+     * @param weights the weight of each rotating Screen, in the order they
+     * were added, never empty.
+     * @param current the index of the Screen displayed now, -1 if none.
+     * @return the index of the Screen to display next.
+     */
+    public int next(int[] weights, int current);
+}
@@ -0,0 +1,19 @@
+package org.lcdproc.lcdjava.util;
+
+/**
+ * Displays each Screen in turn, in the order they were added, ignoring their
+ * weights.
+ */
+public class RoundRobinPolicy implements RotationPolicy
+{
+    /**
+     * Choose the Screen after the current one, wrapping around at the end.
+     * @param weights the weight of each rotating Screen.
+     * @param current the index of the Screen displayed now, -1 if none.
+     * @return the index of the Screen to display next.
+     */
+    public int next(int[] weights, int current)
+    {
+        return (current + 1) % weights.length;
+    }
+}
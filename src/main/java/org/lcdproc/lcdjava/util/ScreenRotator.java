@@ -0,0 +1,433 @@
+package org.lcdproc.lcdjava.util;
+
+import org.lcdproc.lcdjava.LCD;
+import org.lcdproc.lcdjava.Screen;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Displays a set of Screens one at a time, each for its own dwell time.
+ * <p>Every ScreenRotator shares the threads of a WidgetScheduler and only
+ * ever has one pending task, so rotating any number of Screens costs no
+ * extra threads. Switching Screens hides the old one and shows the new one
+ * in a single batch, and only the priority is sent.
+ * <p>{@link #alert(Screen, int)} pre-empts the rotation with a Screen at
+ * alert priority, rotation carries on with the next Screen once the alert
+ * times out.
+ */
+public class ScreenRotator
+{
+    private static Logger _log = LoggerFactory.getLogger(ScreenRotator.class);
+
+    /**
+     * The LCD the Screens belong to.
+     */
+    private final LCD _lcd;
+
+    /**
+     * Chooses which Screen to display next.
+     */
+    private final RotationPolicy _policy;
+
+    /**
+     * The scheduler that runs the rotation.
+     */
+    private final WidgetScheduler _scheduler;
+
+    /**
+     * The priority to set on the displayed Screen.
+     */
+    private final String _priority;
+
+    /**
+     * The rotating Screens, in the order they were added.
+     */
+    private final List<Slot> _slots;
+
+    /**
+     * The weight of each rotating Screen, null until next needed.
+     */
+    private int[] _weights;
+
+    /**
+     * The index of the Screen displayed now, -1 if none.
+     */
+    private int _current = -1;
+
+    /**
+     * The Screen displayed at alert priority, null if none.
+     */
+    private Screen _alert;
+
+    /**
+     * The next rotation or the end of the alert.
+     */
+    private ScheduledFuture<?> _pending;
+
+    /**
+     * Identifies the latest pending task, so one that was cancelled too late
+     * does nothing.
+     */
+    private int _generation;
+
+    /**
+     * Flag that tracks if we are rotating or not.
+     */
+    private boolean _running;
+
+    /**
+     * Public constructor.
+     * @param lcd the LCD the Screens belong to.
+     * @param policy chooses which Screen to display next.
+     * @param priority the priority to set on the displayed Screen.
+     * @param scheduler the scheduler that runs the rotation.
+     */
+    public ScreenRotator(LCD lcd,
+                         RotationPolicy policy,
+                         String priority,
+                         WidgetScheduler scheduler)
+    {
+        _lcd = lcd;
+        _policy = policy;
+        _priority = priority;
+        _scheduler = scheduler;
+        _slots = new ArrayList<>();
+    }
+
+    /**
+     * Public constructor, displaying Screens at foreground priority on the
+     * default WidgetScheduler.
+     * @param lcd the LCD the Screens belong to.
+     * @param policy chooses which Screen to display next.
+     */
+    public ScreenRotator(LCD lcd, RotationPolicy policy)
+    {
+        this(lcd, policy, Screen.PRIORITY_FOREGROUND,
+             WidgetScheduler.getDefault());
+    }
+
+    /**
+     * Add a Screen to the rotation with a weight of one.
+     * @param screen the Screen.
+     * @param dwell how long to display it for (in milliseconds).
+     */
+    public void addScreen(Screen screen, int dwell)
+    {
+        addScreen(screen, dwell, 1);
+    }
+
+    /**
+     * Add a Screen to the rotation.
+     * @param screen the Screen.
+     * @param dwell how long to display it for (in milliseconds).
+     * @param weight how often to display it compared to the other Screens,
+     * if the RotationPolicy uses weights.
+     */
+    public synchronized void addScreen(Screen screen, int dwell, int weight)
+    {
+        _slots.add(new Slot(screen, dwell, weight));
+        _weights = null;
+
+        if (_running && _alert == null && _current < 0)
+        {
+            rotate();
+        }
+    }
+
+    /**
+     * Remove a Screen from the rotation, hiding it if displayed.
+     * @param screen the Screen.
+     * @return <code>true</code> if the Screen was rotating,
+     * <code>false</code> otherwise.
+     */
+    public synchronized boolean removeScreen(Screen screen)
+    {
+        int index = indexOf(screen);
+        if (index < 0)
+        {
+            return false;
+        }
+
+        _slots.remove(index);
+        _weights = null;
+
+        if (index == _current)
+        {
+            _current = -1;
+            screen.setPriority(Screen.PRIORITY_HIDDEN);
+            if (_running && _alert == null)
+            {
+                rotate();
+            }
+        }
+        else if (index < _current)
+        {
+            _current--;
+        }
+
+        return true;
+    }
+
+    /**
+     * Start rotating, displaying the first Screen straight away.
+     */
+    public synchronized void start()
+    {
+        if (!_running)
+        {
+            _running = true;
+            if (_alert == null)
+            {
+                rotate();
+            }
+        }
+    }
+
+    /**
+     * Stop rotating and hide the displayed Screen and any alert.
+     */
+    public synchronized void stop()
+    {
+        _running = false;
+        cancel();
+        _lcd.batch(() ->
+        {
+            hideCurrent();
+            if (_alert != null)
+            {
+                _alert.setPriority(Screen.PRIORITY_HIDDEN);
+                _alert = null;
+            }
+        });
+    }
+
+    /**
+     * Display a Screen at alert priority, pausing the rotation until it
+     * times out.
+     * <p>A new alert replaces any alert still displayed.
+     * @param screen the Screen to display.
+     * @param timeout how long to display it for (in milliseconds).
+     */
+    public synchronized void alert(Screen screen, int timeout)
+    {
+        cancel();
+        Screen previous = _alert;
+        _alert = screen;
+        schedule(this::endAlert, timeout);
+
+        _lcd.batch(() ->
+        {
+            if (previous != null && previous != screen)
+            {
+                previous.setPriority(Screen.PRIORITY_HIDDEN);
+            }
+            screen.setPriority(Screen.PRIORITY_ALERT);
+        });
+    }
+
+    /**
+     * Get the Screen displayed now.
+     * @return the alert if one is displayed, otherwise the rotating Screen
+     * displayed now, or null if none.
+     */
+    public synchronized Screen getCurrentScreen()
+    {
+        if (_alert != null)
+        {
+            return _alert;
+        }
+        return _current < 0 ? null : _slots.get(_current)._screen;
+    }
+
+    /**
+     * Are we rotating?
+     * @return <code>true</code> if rotating, <code>false</code> otherwise.
+     */
+    public synchronized boolean isRunning()
+    {
+        return _running;
+    }
+
+    /**
+     * Hide the alert and carry on rotating.
+     */
+    private void endAlert()
+    {
+        Screen alert = _alert;
+        _alert = null;
+        _lcd.batch(() ->
+        {
+            alert.setPriority(Screen.PRIORITY_HIDDEN);
+            if (_running)
+            {
+                rotate();
+            }
+        });
+    }
+
+    /**
+     * Display the next Screen and schedule the rotation after it.
+     */
+    private void rotate()
+    {
+        if (_slots.isEmpty())
+        {
+            _current = -1;
+            return;
+        }
+
+        if (_weights == null)
+        {
+            _weights = new int[_slots.size()];
+            for (int i = 0; i < _weights.length; i++)
+            {
+                _weights[i] = _slots.get(i)._weight;
+            }
+        }
+
+        int next = _policy.next(_weights, _current);
+        Slot slot = _slots.get(next);
+        // Schedule first so a failed write doesn't stop the rotation
+        schedule(this::rotate, slot._dwell);
+
+        int previous = _current;
+        _current = next;
+        _lcd.batch(() ->
+        {
+            if (previous >= 0 && previous != next)
+            {
+                _slots.get(previous)._screen.setPriority(
+                        Screen.PRIORITY_HIDDEN);
+            }
+            slot._screen.setPriority(_priority);
+        });
+    }
+
+    /**
+     * Hide the rotating Screen displayed now, if any.
+     */
+    private void hideCurrent()
+    {
+        if (_current >= 0)
+        {
+            _slots.get(_current)._screen.setPriority(Screen.PRIORITY_HIDDEN);
+            _current = -1;
+        }
+    }
+
+    /**
+     * Replace any pending task with the given one.
+     * @param task the task to run, holding our lock.
+     * @param delay how long to wait (in milliseconds).
+     */
+    private void schedule(Runnable task, int delay)
+    {
+        cancel();
+        int generation = _generation;
+        _pending = _scheduler.schedule(() -> run(task, generation), delay);
+    }
+
+    /**
+     * Run a pending task unless it has been replaced.
+     * @param task the task to run.
+     * @param generation the generation of the pending task.
+     */
+    private synchronized void run(Runnable task, int generation)
+    {
+        if (generation != _generation)
+        {
+            return;
+        }
+
+        _pending = null;
+        try
+        {
+            task.run();
+        }
+        catch (RuntimeException e)
+        {
+            // The next rotation is already scheduled
+            _log.error("Unable to rotate screens", e);
+        }
+    }
+
+    /**
+     * Cancel the pending task, if any.
+     */
+    private void cancel()
+    {
+        _generation++;
+        if (_pending != null)
+        {
+            _pending.cancel(false);
+            _pending = null;
+        }
+    }
+
+    /**
+     * Find a rotating Screen.
+     * @param screen the Screen.
+     * @return its index, or -1 if it isn't rotating.
+     */
+    private int indexOf(Screen screen)
+    {
+        for (int i = 0; i < _slots.size(); i++)
+        {
+            if (_slots.get(i)._screen == screen)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return a String representing this object.
+     * @return a String representing this object.
+     */
+    public String toString()
+    {
+        return "Running = " + _running +
+               "; screens = " + _slots.size() +
+               "; current = " + _current +
+               "; alert = " + _alert;
+    }
+
+    /**
+     * A rotating Screen.
+     */
+    private static class Slot
+    {
+        /**
+         * The Screen.
+         */
+        private final Screen _screen;
+
+        /**
+         * How long to display it for (in milliseconds).
+         */
+        private final int _dwell;
+
+        /**
+         * How often to display it compared to the other Screens.
+         */
+        private final int _weight;
+
+        /**
+         * Constructor.
+         * @param screen the Screen.
+         * @param dwell how long to display it for (in milliseconds).
+         * @param weight how often to display it.
+         */
+        Slot(Screen screen, int dwell, int weight)
+        {
+            _screen = screen;
+            _dwell = dwell;
+            _weight = weight;
+        }
+    }
+}
@@ -2,12 +2,17 @@ package org.lcdproc.lcdjava.util;
 
 import org.lcdproc.lcdjava.Screen;
 
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * A Runnable class to display a Screen for a specified time period.
+ * <p>Each {@link #display()} arms a single deadline on a WidgetScheduler and
+ * {@link #hide()} cancels it, so nothing runs while the Screen is hidden.
+ * Running a ScreenThread on a Thread of its own is no longer needed, but
+ * {@link #run()} still blocks until {@link #destroy()} for callers that do.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: ScreenThread.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
@@ -57,14 +62,20 @@ public class ScreenThread implements Runnable
     private List<TimeoutHook> _timeoutHooks;
 
     /**
-     * How many times to count down before calling stop.
+     * The scheduler that times out the display.
      */
-    private int _step;
+    private final WidgetScheduler _scheduler;
 
     /**
-     * How often to poll for changes.
+     * The pending timeout while displaying.
      */
-    private static final int POLL = 100;
+    private ScheduledFuture<?> _pending;
+
+    /**
+     * Identifies the latest display, so a timeout that was cancelled too late
+     * does nothing.
+     */
+    private int _generation;
 
     /**
      * Public constructor.
@@ -72,18 +83,37 @@ public class ScreenThread implements Runnable
      * @param timeout how long to display for once woken up (in milliseconds).
      * @param priority the priority to set when awake.
      * @param dieOnTimeout whether we should die after the first timeout or not.
+     * @param scheduler the scheduler that times out the display.
      */
     public ScreenThread(Screen screen,
                         int timeout,
                         String priority,
-                        boolean dieOnTimeout)
+                        boolean dieOnTimeout,
+                        WidgetScheduler scheduler)
     {
         _screen = screen;
         _timeout = timeout;
         _priority = priority;
         _dieOnTimeout = dieOnTimeout;
+        _scheduler = scheduler;
 
-        _timeoutHooks = new ArrayList<>();
+        _timeoutHooks = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Public constructor, timing out on the default WidgetScheduler.
+     * @param screen the Screen to monitor.
+     * @param timeout how long to display for once woken up (in milliseconds).
+     * @param priority the priority to set when awake.
+     * @param dieOnTimeout whether we should die after the first timeout or not.
+     */
+    public ScreenThread(Screen screen,
+                        int timeout,
+                        String priority,
+                        boolean dieOnTimeout)
+    {
+        this(screen, timeout, priority, dieOnTimeout,
+             WidgetScheduler.getDefault());
     }
 
     /**
@@ -118,38 +148,19 @@ public class ScreenThread implements Runnable
     }
 
     /**
-     * Switch to the specified priority for the specified time period.
+     * Block until destroyed, the display is timed out by the WidgetScheduler.
      */
-    public void run()
+    public synchronized void run()
     {
         while (_alive)
         {
-            synchronized (this)
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
             {
-                try
-                {
-                    Thread.sleep(POLL);
-                    if (_displaying)
-                    {
-                        if (_step > 0)
-                        {
-                            _step--;
-                            if (!_priority.equals(_screen.getPriority()))
-                            {
-                                start();
-                            }
-                        }
-                        else
-                        {
-                            stop();
-                            timeout();
-                        }
-                    }
-                }
-                catch (InterruptedException e)
-                {
-                    // Do nothing
-                }
+                // Do nothing
             }
         }
     }
@@ -163,21 +174,44 @@ public class ScreenThread implements Runnable
     }
 
     /**
-     * Set counter to zero then hide the screen.
+     * The deadline of a display has passed, hide the screen.
      * <p>This triggers a timeout and any TimeoutHooks are notified.
+     * @param generation the display that timed out.
+     */
+    private void expire(int generation)
+    {
+        synchronized (this)
+        {
+            if (!_displaying || generation != _generation)
+            {
+                return;
+            }
+            _pending = null;
+            hide();
+        }
+        timeout();
+    }
+
+    /**
+     * Cancel the pending timeout, if any.
      */
-    private void stop()
+    private void cancel()
     {
-        _step = 0;
-        hide();
+        _generation++;
+        if (_pending != null)
+        {
+            _pending.cancel(false);
+            _pending = null;
+        }
     }
 
     /**
      * Switch to the hidden priority (hide the screen).
      * <p>Explicitly hide the screen without triggering a timeout.
      */
-    public void hide()
+    public synchronized void hide()
     {
+        cancel();
         _displaying = false;
         _screen.setPriority(Screen.PRIORITY_HIDDEN);
     }
@@ -185,27 +219,37 @@ public class ScreenThread implements Runnable
     /**
      * Tell this thread to die gracefully.
      */
-    public void destroy()
+    public synchronized void destroy()
     {
         _alive = false;
+        cancel();
+        notifyAll();
     }
 
     /**
      * Are we displaying now?
      * @return <code>true</code> if displaying, <code>false</code> otherwise.
      */
-    public boolean isDisplaying()
+    public synchronized boolean isDisplaying()
     {
         return _displaying;
     }
 
     /**
      * Tell the screen to display for the specified timeout.
+     * <p>Displaying again before the timeout restarts it from now.
      */
-    public void display()
+    public synchronized void display()
     {
-        _step = ((int)_timeout / POLL);
+        if (!_alive)
+        {
+            return;
+        }
+        cancel();
         _displaying = true;
+        start();
+        int generation = _generation;
+        _pending = _scheduler.schedule(() -> expire(generation), _timeout);
     }
 
     /**
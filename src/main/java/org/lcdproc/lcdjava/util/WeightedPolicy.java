@@ -0,0 +1,46 @@
+package org.lcdproc.lcdjava.util;
+
+/**
+ * Displays each Screen in proportion to its weight.
+ * <p>Uses a smooth weighted round-robin, so a Screen with weight 2 is shown
+ * twice for every time a Screen with weight 1 is, and heavier Screens are
+ * spread out through the cycle rather than shown back to back.
+ */
+public class WeightedPolicy implements RotationPolicy
+{
+    /**
+     * The running score of each Screen, the highest is shown next.
+     */
+    private int[] _scores = new int[0];
+
+    /**
+     * Choose the Screen with the highest score.
+     * <p>The scores start again whenever the number of Screens changes.
+     * @param weights the weight of each rotating Screen.
+     * @param current the index of the Screen displayed now, -1 if none.
+     * @return the index of the Screen to display next.
+     */
+    public synchronized int next(int[] weights, int current)
+    {
+        if (_scores.length != weights.length)
+        {
+            _scores = new int[weights.length];
+        }
+
+        int total = 0;
+        int best = 0;
+        for (int i = 0; i < weights.length; i++)
+        {
+            int weight = Math.max(weights[i], 0);
+            _scores[i] += weight;
+            total += weight;
+            if (_scores[i] > _scores[best])
+            {
+                best = i;
+            }
+        }
+        _scores[best] -= total;
+
+        return best;
+    }
+}
@@ -0,0 +1,108 @@
+package org.lcdproc.lcdjava.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs any number of WidgetTimers on a small, shared pool of threads.
+ * <p>A WidgetTimer started with {@link #schedule(WidgetUpdater, int)} only
+ * holds a pending task between updates rather than a sleeping thread, so
+ * thousands of periodic widgets need no more than a couple of threads.
+ * Changing the timeout of a scheduled WidgetTimer moves its next update
+ * straight away.
+ */
+public class WidgetScheduler
+{
+    /**
+     * The number of threads used by the default WidgetScheduler.
+     */
+    public static final int DEFAULT_THREADS = 2;
+
+    /**
+     * Numbers the threads of every WidgetScheduler.
+     */
+    private static final AtomicInteger _threadCounter = new AtomicInteger();
+
+    /**
+     * The threads running the updates.
+     */
+    private final ScheduledThreadPoolExecutor _executor;
+
+    /**
+     * Public constructor.
+     * @param threads the number of threads to run updates on.
+     */
+    public WidgetScheduler(int threads)
+    {
+        _executor = new ScheduledThreadPoolExecutor(threads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "WidgetScheduler-" +
+                                       _threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Rescheduled timers cancel their pending task, don't let them pile up
+        _executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Get the WidgetScheduler shared by everything that doesn't create its
+     * own.
+     * <p>It runs on {@link #DEFAULT_THREADS} daemon threads, created on first
+     * use.
+     * @return the shared WidgetScheduler.
+     */
+    public static WidgetScheduler getDefault()
+    {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Update the given Widget now and then every timeout milliseconds until
+     * the returned WidgetTimer is destroyed.
+     * @param updater the WidgetUpdater that will update when displaying.
+     * @param timeout the time between updates (in milliseconds), the
+     * WidgetUpdater may change it with {@link WidgetTimer#setTimeout(int)}.
+     * @return the WidgetTimer, already started.
+     */
+    public WidgetTimer schedule(WidgetUpdater updater, int timeout)
+    {
+        WidgetTimer timer = new WidgetTimer(updater, timeout, this);
+        timer.start();
+        return timer;
+    }
+
+    /**
+     * Run a task once after the given delay.
+     * @param task the task to run.
+     * @param delay how long to wait (in milliseconds).
+     * @return the pending task, which may be cancelled.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay)
+    {
+        return _executor.schedule(task, Math.max(delay, 0),
+                                  TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop running updates, anything already running is allowed to finish.
+     */
+    public void shutdown()
+    {
+        _executor.shutdownNow();
+    }
+
+    /**
+     * Creates the default WidgetScheduler on first use.
+     */
+    private static class DefaultHolder
+    {
+        /**
+         * The shared WidgetScheduler.
+         */
+        static final WidgetScheduler INSTANCE =
+            new WidgetScheduler(DEFAULT_THREADS);
+    }
+}
@@ -1,15 +1,24 @@
 package org.lcdproc.lcdjava.util;
 
 import org.lcdproc.lcdjava.Widget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * A Runnable class to update a Widget on a specified time period.
+ * <p>A WidgetTimer either runs on its own Thread or, when created by
+ * {@link WidgetScheduler#schedule(WidgetUpdater, int)}, on the threads of a
+ * shared WidgetScheduler.
  * <p>Copyright (c) 2004-2005 Darren Greaves.
  * @author Darren Greaves
  * @version $Id: WidgetTimer.java,v 1.2 2005-03-03 14:13:16 boncey Exp $
  */
 public class WidgetTimer implements Runnable
 {
+    private static Logger _log = LoggerFactory.getLogger(WidgetTimer.class);
+
     /**
      * Version details.
      */
@@ -32,35 +41,178 @@ public class WidgetTimer implements Runnable
     private int _timeout;
 
     /**
-     * Public constructor.
+     * When the next update is due (from {@link System#nanoTime()}), only
+     * used when running on our own Thread.
+     */
+    private long _deadline;
+
+    /**
+     * The scheduler we run on, null when running on our own Thread.
+     */
+    private final WidgetScheduler _scheduler;
+
+    /**
+     * The pending update when running on a WidgetScheduler.
+     */
+    private ScheduledFuture<?> _pending;
+
+    /**
+     * Identifies the latest pending update, so one that was replaced but
+     * could not be cancelled in time does nothing.
+     */
+    private int _generation;
+
+    /**
+     * Flag that tracks if the WidgetUpdater is running on a WidgetScheduler.
+     */
+    private boolean _updating;
+
+    /**
+     * Public constructor, the WidgetTimer must be run on its own Thread.
      * @param updater the WidgetUpdater that will update when displaying.
      * @param timeout how long to display the widget for (in milliseconds).
      */
     public WidgetTimer(WidgetUpdater updater, int timeout)
+    {
+        this(updater, timeout, null);
+    }
+
+    /**
+     * Constructor.
+     * @param updater the WidgetUpdater that will update when displaying.
+     * @param timeout how long to display the widget for (in milliseconds).
+     * @param scheduler the scheduler to run on, null to run on our own
+     * Thread.
+     */
+    WidgetTimer(WidgetUpdater updater, int timeout, WidgetScheduler scheduler)
     {
         _updater = updater;
         _timeout = timeout;
+        _scheduler = scheduler;
     }
 
     /**
-     * Switch to the specified priority for the specified time period.
+     * Update the Widget every timeout milliseconds until destroyed.
+     * <p>Only used when running on our own Thread, a WidgetTimer created by
+     * a WidgetScheduler is already running.
      */
     public void run()
     {
-        while (_alive)
+        while (isAlive())
+        {
+            update();
+
+            synchronized (this)
+            {
+                _deadline = System.nanoTime() + _timeout * 1000000L;
+                try
+                {
+                    long remaining = remaining();
+                    while (_alive && remaining > 0)
+                    {
+                        // setTimeout() moves the deadline and wakes us up
+                        wait(remaining);
+                        remaining = remaining();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    // Do nothing
+                }
+            }
+        }
+    }
+
+    /**
+     * Start updating on the WidgetScheduler, the first update runs straight
+     * away.
+     */
+    synchronized void start()
+    {
+        reschedule(0);
+    }
+
+    /**
+     * Run an update on the WidgetScheduler then schedule the next one.
+     * @param generation the generation of the pending update that is running.
+     */
+    private void tick(int generation)
+    {
+        synchronized (this)
         {
-            try
+            if (!_alive || generation != _generation)
             {
-                _updater.updateWidget(this);
-                Thread.sleep(_timeout);
+                return;
             }
-            catch (InterruptedException e)
+            _updating = true;
+        }
+
+        try
+        {
+            update();
+        }
+        finally
+        {
+            synchronized (this)
             {
-                // Do nothing
+                _updating = false;
+                if (_alive)
+                {
+                    reschedule(_timeout);
+                }
             }
         }
     }
 
+    /**
+     * Replace any pending update with one after the given delay.
+     * @param delay how long to wait (in milliseconds).
+     */
+    private void reschedule(int delay)
+    {
+        if (_pending != null)
+        {
+            _pending.cancel(false);
+        }
+        int generation = ++_generation;
+        _pending = _scheduler.schedule(() -> tick(generation), delay);
+    }
+
+    /**
+     * Ask the WidgetUpdater to update the Widget.
+     */
+    private void update()
+    {
+        try
+        {
+            _updater.updateWidget(this);
+        }
+        catch (RuntimeException e)
+        {
+            // Keep updating, the next attempt may succeed
+            _log.error("Unable to update " + _updater, e);
+        }
+    }
+
+    /**
+     * Get the time left until the next update, only used when running on our
+     * own Thread.
+     * @return the time left (in milliseconds), rounded up.
+     */
+    private long remaining()
+    {
+        return (_deadline - System.nanoTime() + 999999L) / 1000000L;
+    }
+
+    /**
+     * Are we still alive?
+     * @return <code>true</code> if alive, <code>false</code> otherwise.
+     */
+    private synchronized boolean isAlive()
+    {
+        return _alive;
+    }
+
     /**
      * Return the wrapped Widget.
      * @return the Widget.
@@ -71,23 +223,39 @@ public class WidgetTimer implements Runnable
     }
 
     /**
-     * Alter the timeout value and wake up the thread.
+     * Alter the timeout value.
+     * <p>Called by the WidgetUpdater while updating, the new value is the
+     * time until the next update. Called at any other time, the next update
+     * is moved to the new timeout from now.
      * @param timeout the new timeout value.
      */
     public synchronized void setTimeout(int timeout)
     {
         _timeout = timeout;
-        notify();
+        if (_scheduler == null)
+        {
+            _deadline = System.nanoTime() + timeout * 1000000L;
+            notifyAll();
+        }
+        else if (_alive && !_updating)
+        {
+            reschedule(timeout);
+        }
     }
 
     /**
-     * Tell this thread to die gracefully.
+     * Tell this timer to stop gracefully.
      */
     public synchronized void destroy()
     {
         _alive = false;
         _timeout = 0;
-        notify();
+        if (_pending != null)
+        {
+            _pending.cancel(false);
+            _pending = null;
+        }
+        notifyAll();
     }
 
     /**
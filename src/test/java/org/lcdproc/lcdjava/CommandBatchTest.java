@@ -0,0 +1,192 @@
+package org.lcdproc.lcdjava;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+/**
+ * CommandBatch gathers commands, and batches are written in chunks LCDd
+ * accepts in one read.
+ */
+public class CommandBatchTest
+{
+    /**
+     * Only the outermost batch ends the batch.
+     */
+    @Test
+    public void testNesting()
+    {
+        CommandBatch batch = new CommandBatch();
+        assertFalse(batch.isActive());
+        batch.begin();
+        batch.begin();
+        assertFalse(batch.end());
+        assertTrue(batch.isActive());
+        assertTrue(batch.end());
+        assertFalse(batch.isActive());
+    }
+
+    /**
+     * Ending a batch that wasn't started is an error.
+     */
+    @Test(expected = LCDException.class)
+    public void testEndWithoutBegin()
+    {
+        new CommandBatch().end();
+    }
+
+    /**
+     * The commands, their text and their futures come back in order.
+     */
+    @Test
+    public void testGathers()
+    {
+        CommandBatch batch = new CommandBatch();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        batch.append(command("one"), "one", null);
+        batch.append(command("two"), "two", future);
+
+        assertEquals("one\ntwo\n", text(batch.getData()));
+        assertArrayEquals(new String[] {"one", "two"}, batch.getCommands());
+        assertEquals(2, batch.getFutures().length);
+        assertSame(future, batch.getFutures()[1]);
+
+        batch.clear();
+        batch.append(command("three"), null, null);
+        assertEquals("three\n", text(batch.getData()));
+    }
+
+    /**
+     * A large batch is split on command boundaries into chunks no longer
+     * than LCDd reads at once.
+     */
+    @Test
+    public void testSplitsOnCommandBoundaries()
+    {
+        CommandBatch batch = new CommandBatch();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+        {
+            String text = "widget_set 1 " + i + " 1 1 \"" + i + "\"";
+            batch.append(command(text), null, null);
+            expected.append(text).append('\n');
+        }
+        ByteBuffer data = batch.getData();
+        assertTrue(data.remaining() > 3 * LCD.MAX_DATA_LENGTH);
+
+        List<String> chunks = split(data);
+        StringBuilder joined = new StringBuilder();
+        for (String chunk : chunks)
+        {
+            assertTrue(chunk.length() <= LCD.MAX_DATA_LENGTH);
+            assertTrue(chunk.endsWith("\n"));
+            joined.append(chunk);
+        }
+        assertEquals(expected.toString(), joined.toString());
+
+        // Each chunk is as full as it can be
+        for (int i = 0; i < chunks.size() - 1; i++)
+        {
+            String next = chunks.get(i + 1);
+            int nextCommand = next.indexOf('\n') + 1;
+            assertTrue(chunks.get(i).length() + nextCommand >
+                       LCD.MAX_DATA_LENGTH);
+        }
+    }
+
+    /**
+     * A batch that exactly fills a read is written in one go.
+     */
+    @Test
+    public void testExactlyFull()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LCD.MAX_DATA_LENGTH - 1; i++)
+        {
+            text.append('x');
+        }
+        CommandBatch batch = new CommandBatch();
+        batch.append(command(text.toString()), null, null);
+        List<String> chunks = split(batch.getData());
+        assertEquals(1, chunks.size());
+        assertEquals(LCD.MAX_DATA_LENGTH, chunks.get(0).length());
+    }
+
+    /**
+     * A single command longer than a read goes in a chunk of its own.
+     */
+    @Test
+    public void testOversizedCommandAlone()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LCD.MAX_DATA_LENGTH + 100; i++)
+        {
+            text.append('x');
+        }
+        CommandBatch batch = new CommandBatch();
+        batch.append(command("before"), null, null);
+        batch.append(command(text.toString()), null, null);
+        batch.append(command("after"), null, null);
+
+        List<String> chunks = split(batch.getData());
+        assertEquals(3, chunks.size());
+        assertEquals("before\n", chunks.get(0));
+        assertEquals(text + "\n", chunks.get(1));
+        assertEquals("after\n", chunks.get(2));
+    }
+
+    /**
+     * Split a batch the way LCDSocketWriter writes it.
+     * @param data the batch.
+     * @return the chunks.
+     */
+    private static List<String> split(ByteBuffer data)
+    {
+        List<String> chunks = new ArrayList<>();
+        int start = data.position();
+        while (start < data.limit())
+        {
+            int end = LCDSocketWriter.chunkEnd(data, start,
+                                               LCD.MAX_DATA_LENGTH);
+            byte[] chunk = new byte[end - start];
+            for (int i = 0; i < chunk.length; i++)
+            {
+                chunk[i] = data.get(start + i);
+            }
+            chunks.add(new String(chunk, StandardCharsets.ISO_8859_1));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Make a newline terminated command.
+     * @param text the command.
+     * @return the command.
+     */
+    private static ByteBuffer command(String text)
+    {
+        return ByteBuffer.wrap((text + "\n").getBytes(
+                StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Read the text of a buffer without moving it.
+     * @param data the buffer.
+     * @return the text.
+     */
+    private static String text(ByteBuffer data)
+    {
+        return StandardCharsets.ISO_8859_1.decode(data.duplicate()).toString();
+    }
+}
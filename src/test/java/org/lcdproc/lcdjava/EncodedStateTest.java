@@ -0,0 +1,88 @@
+package org.lcdproc.lcdjava;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * EncodedState skips commands that repeat the last one written.
+ */
+public class EncodedStateTest
+{
+    /**
+     * A repeated command is skipped, a different one is not.
+     */
+    @Test
+    public void testElidesRepeats()
+    {
+        EncodedState state = new EncodedState();
+        assertTrue(changes(state, "foo"));
+        assertFalse(changes(state, "foo"));
+        assertTrue(changes(state, "bar"));
+        assertFalse(changes(state, "bar"));
+        assertTrue(changes(state, "foo"));
+    }
+
+    /**
+     * Commands that only differ in length are not mistaken for repeats.
+     */
+    @Test
+    public void testLengthChanges()
+    {
+        EncodedState state = new EncodedState();
+        assertTrue(changes(state, "foo"));
+        assertTrue(changes(state, "foobar"));
+        assertTrue(changes(state, "foo"));
+        assertTrue(changes(state, ""));
+        assertFalse(changes(state, ""));
+    }
+
+    /**
+     * Commands longer than the state's initial buffer are recorded whole.
+     */
+    @Test
+    public void testLongCommands()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+        {
+            text.append(i % 10);
+        }
+
+        EncodedState state = new EncodedState();
+        assertTrue(changes(state, text.toString()));
+        assertFalse(changes(state, text.toString()));
+        text.setCharAt(499, 'x');
+        assertTrue(changes(state, text.toString()));
+    }
+
+    /**
+     * After invalidating, the same command is written again.
+     */
+    @Test
+    public void testInvalidate()
+    {
+        EncodedState state = new EncodedState();
+        assertTrue(changes(state, "foo"));
+        state.invalidate();
+        assertTrue(changes(state, "foo"));
+        assertFalse(changes(state, "foo"));
+    }
+
+    /**
+     * Encode a widget_set command and compare it with the state.
+     * @param state the last command written.
+     * @param text the text of the command.
+     * @return <code>true</code> if it should be written,
+     * <code>false</code> otherwise.
+     */
+    private static boolean changes(EncodedState state, String text)
+    {
+        CommandEncoder encoder = CommandEncoder.start(LCD.CMD_WIDGET_SET);
+        encoder.putInt(1);
+        encoder.put(' ');
+        encoder.putQuoted(text);
+        return encoder.changes(state);
+    }
+}
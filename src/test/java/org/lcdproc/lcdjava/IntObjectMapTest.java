@@ -0,0 +1,96 @@
+package org.lcdproc.lcdjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * IntObjectMap behaves like a Map, in particular after removals shift
+ * entries back.
+ */
+public class IntObjectMapTest
+{
+    /**
+     * Values can be put, replaced, got and removed.
+     */
+    @Test
+    public void testPutGetRemove()
+    {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-7, "minus seven"));
+        assertEquals("one", map.put(1, "uno"));
+
+        assertEquals(2, map.size());
+        assertEquals("uno", map.get(1));
+        assertEquals("minus seven", map.get(-7));
+        assertNull(map.get(2));
+        assertTrue(map.containsKey(-7));
+
+        assertEquals("uno", map.remove(1));
+        assertNull(map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertEquals(1, map.size());
+    }
+
+    /**
+     * Every remaining key is still found after removing keys from the
+     * middle of probe sequences, as the map grows and shrinks.
+     */
+    @Test
+    public void testRemoveShiftsEntriesBack()
+    {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++)
+        {
+            // A small range of keys so probe sequences overlap and wrap
+            int key = random.nextInt(300) - 50;
+            if (random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            else
+            {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -50; key < 250; key++)
+        {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    /**
+     * Removing everything leaves an empty map that still works.
+     */
+    @Test
+    public void testRemoveAll()
+    {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            map.put(i * 16, i);
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(Integer.valueOf(i), map.remove(i * 16));
+        }
+
+        assertEquals(0, map.size());
+        assertTrue(map.values().isEmpty());
+        map.put(5, 5);
+        assertEquals(Integer.valueOf(5), map.get(5));
+    }
+}
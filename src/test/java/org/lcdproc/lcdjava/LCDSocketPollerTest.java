@@ -0,0 +1,233 @@
+package org.lcdproc.lcdjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Lines from LCDd are split into the right events, however they arrive.
+ */
+public class LCDSocketPollerTest
+{
+    /**
+     * How long to wait for an event (in seconds).
+     */
+    private static final int TIMEOUT = 5;
+
+    /**
+     * The LCDd end of the connection.
+     */
+    private SocketChannel _server;
+
+    /**
+     * The client end of the connection.
+     */
+    private SocketChannel _client;
+
+    /**
+     * The poller under test.
+     */
+    private LCDSocketPoller _poller;
+
+    /**
+     * The replies to our commands.
+     */
+    private ResponseTracker _tracker;
+
+    /**
+     * The events the poller reported, as text.
+     */
+    private BlockingQueue<String> _events;
+
+    /**
+     * Connect a poller to a socket we can write LCDd's side of.
+     * @throws IOException if the connection failed.
+     */
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        try (ServerSocketChannel listener = ServerSocketChannel.open())
+        {
+            listener.bind(new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), 0));
+            _client = SocketChannel.open(listener.getLocalAddress());
+            _server = listener.accept();
+        }
+
+        _events = new LinkedBlockingQueue<>();
+        _tracker = new ResponseTracker();
+        _tracker.setEnabled(true);
+        _poller = new LCDSocketPoller(_client, new LCDListener()
+        {
+            public void setListenStatus(int screenId, boolean listening)
+            {
+                _events.add((listening ? "listen " : "ignore ") + screenId);
+            }
+
+            public void menuAction(String menuId,
+                                   String eventType,
+                                   String value)
+            {
+                _events.add("menu " + menuId + " " + eventType + " " + value);
+            }
+        }, _tracker);
+        _poller.start();
+    }
+
+    /**
+     * Stop the poller and close both ends.
+     * @throws Exception if something went wrong.
+     */
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        _poller.interrupt();
+        _poller.join(TIMEOUT * 1000);
+        _client.close();
+        _server.close();
+    }
+
+    /**
+     * The first line completes the handshake.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testHandshake()
+        throws Exception
+    {
+        send("connect LCDproc 0.5.9 protocol 0.3 lcd wid 20 hgt 4\n");
+        assertEquals("connect LCDproc 0.5.9 protocol 0.3 lcd wid 20 hgt 4",
+                     _poller.getHandshake().get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Listen and ignore events are reported with their screen id, even with
+     * CRLF line ends or split across reads.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testListenAndIgnore()
+        throws Exception
+    {
+        handshake();
+        send("listen 3\r\nignore   42\nlis");
+        assertEquals("listen 3", nextEvent());
+        assertEquals("ignore 42", nextEvent());
+        send("ten 7\n");
+        assertEquals("listen 7", nextEvent());
+    }
+
+    /**
+     * Screen ids that don't fit in an int are ignored rather than wrapping
+     * round to another Screen.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testScreenIdOverflow()
+        throws Exception
+    {
+        handshake();
+        send("listen 4294967297\nignore 99999999999999999999\nlisten \n" +
+             "listen 2147483647\n");
+        assertEquals("listen 2147483647", nextEvent());
+    }
+
+    /**
+     * Menu events are reported with their value, if any.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testMenuEvent()
+        throws Exception
+    {
+        handshake();
+        send("menuevent update _0_1 on\nmenuevent select _0_2\n");
+        assertEquals("menu _0_1 update on", nextEvent());
+        assertEquals("menu _0_2 select null", nextEvent());
+    }
+
+    /**
+     * Replies complete the futures of the commands that caused them, in
+     * order, while other lines are skipped.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testReplies()
+        throws Exception
+    {
+        handshake();
+        CompletableFuture<Response> first = new CompletableFuture<>();
+        CompletableFuture<Response> second = new CompletableFuture<>();
+        _tracker.sent("screen_add 1", first);
+        _tracker.sent("bogus", second);
+        send("success\nlisten 1\nhuh? unknown command\n");
+
+        Response response = first.get(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(response.isSuccess());
+        assertEquals("screen_add 1", response.getCommand());
+
+        response = second.get(TIMEOUT, TimeUnit.SECONDS);
+        assertFalse(response.isSuccess());
+        assertEquals("bogus", response.getCommand());
+        assertEquals("huh? unknown command", response.getMessage());
+        assertEquals("listen 1", nextEvent());
+    }
+
+    /**
+     * Complete the handshake, which the tracker sees as the reply to
+     * <code>hello</code>.
+     * @throws Exception if something went wrong.
+     */
+    private void handshake()
+        throws Exception
+    {
+        _tracker.sent("hello", null);
+        send("connect LCDproc 0.5.9 protocol 0.3 lcd wid 20 hgt 4\n");
+        _poller.getHandshake().get(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send some data from LCDd.
+     * @param text the data.
+     * @throws IOException if it couldn't be sent.
+     */
+    private void send(String text)
+        throws IOException
+    {
+        ByteBuffer data = ByteBuffer.wrap(
+                text.getBytes(StandardCharsets.ISO_8859_1));
+        while (data.hasRemaining())
+        {
+            _server.write(data);
+        }
+    }
+
+    /**
+     * Wait for the next event.
+     * @return the event.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private String nextEvent()
+        throws InterruptedException
+    {
+        return _events.poll(TIMEOUT, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,346 @@
+package org.lcdproc.lcdjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Producer threads updating independent Screens against a fake LCDd.
+ * <p>Checks every command arrives whole and in order for its Screen, and
+ * logs the throughput at each producer thread count.
+ */
+public class LCDStressTest
+{
+    /**
+     * The logger for this class.
+     */
+    private static final Logger _log = LoggerFactory.getLogger(LCDStressTest.class);
+
+    /**
+     * The producer thread counts to measure.
+     */
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    /**
+     * The number of updates made at each thread count, shared between the
+     * producers.
+     */
+    private static final int UPDATES = 64000;
+
+    /**
+     * How long to wait for LCDd to receive everything (in seconds).
+     */
+    private static final int TIMEOUT = 60;
+
+    /**
+     * A widget_set from a producer.
+     */
+    private static final Pattern UPDATE = Pattern.compile(
+            "widget_set (\\d+) \\d+ \\d+ \\d+ \"p(\\d+)-(\\d+)\"");
+
+    /**
+     * Every command the producers cause to be sent.
+     */
+    private static final Pattern WELL_FORMED = Pattern.compile(
+            "hello|" +
+            "client_set -name \"?\\w+\"?|" +
+            "screen_add \\d+|" +
+            "screen_set \\d+( -\\w+ (\\w+|\"[^\"]*\"))+|" +
+            "widget_add \\d+ \\d+ string|" +
+            "widget_set \\d+ \\d+ \\d+ \\d+ \"[^\"]*\"");
+
+    /**
+     * The fake LCDd.
+     */
+    private FakeLCDd _server;
+
+    /**
+     * Start the fake LCDd.
+     * @throws IOException if it couldn't listen.
+     */
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        _server = new FakeLCDd();
+        _server.start();
+    }
+
+    /**
+     * Stop the fake LCDd.
+     * @throws IOException if it couldn't be closed.
+     */
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        _server.close();
+    }
+
+    /**
+     * Update one Screen per producer thread at each thread count, checking
+     * the commands LCDd receives.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testProducersOnIndependentScreens()
+        throws Exception
+    {
+        // Warm up so the first thread count isn't measuring the JIT
+        produce(THREADS[THREADS.length - 1]);
+
+        for (int threads : THREADS)
+        {
+            double rate = produce(threads);
+            _log.info(String.format("%2d producer threads: %,9.0f updates/s",
+                                    threads, rate));
+        }
+    }
+
+    /**
+     * Update one Screen per producer thread on a new connection, and check
+     * the commands LCDd receives.
+     * @param threads the number of producer threads.
+     * @return the number of updates made per second.
+     * @throws Exception if something went wrong.
+     */
+    private double produce(int threads)
+        throws Exception
+    {
+        LCD lcd = new LCD("127.0.0.1", _server.getPort(), "stress");
+        int perThread = UPDATES / threads;
+        Map<Integer, Integer> owners = new HashMap<>();
+        StringWidget[] widgets = new StringWidget[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            Screen screen =
+                lcd.constructScreen("p" + t, Screen.PRIORITY_INFO, true);
+            widgets[t] = StringWidget.construct(screen, 1, 1, "");
+            widgets[t].activate();
+            owners.put(screen.getId(), t);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            StringWidget widget = widgets[t];
+            String prefix = "p" + t + "-";
+            Thread producer = new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++)
+                {
+                    widget.setText(prefix + i);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread producer : producers)
+        {
+            producer.join();
+        }
+        long elapsed = System.nanoTime() - began;
+
+        // LCDd replies in order, so once this is answered it has read
+        // everything, closing the socket earlier may lose the tail
+        lcd.setResponseTracking(true);
+        widgets[0].setText("end");
+        widgets[0].getLastResponse().get(TIMEOUT, TimeUnit.SECONDS);
+        lcd.shutdown();
+
+        check(_server.getLines(TIMEOUT), owners, perThread);
+        return perThread * threads / (elapsed / 1000000000.0);
+    }
+
+    /**
+     * Check every line is a whole command, and each producer's updates
+     * arrived in order.
+     * @param lines the lines LCDd received.
+     * @param owners the producer that updates each Screen id.
+     * @param perThread the number of updates each producer made.
+     */
+    private void check(List<String> lines,
+                       Map<Integer, Integer> owners,
+                       int perThread)
+    {
+        int[] next = new int[owners.size()];
+        for (String line : lines)
+        {
+            assertTrue("Malformed command: " + line,
+                       WELL_FORMED.matcher(line).matches());
+
+            Matcher update = UPDATE.matcher(line);
+            if (update.matches())
+            {
+                int producer = owners.get(Integer.parseInt(update.group(1)));
+                assertEquals("Update on the wrong Screen: " + line,
+                             producer, Integer.parseInt(update.group(2)));
+                assertEquals("Update out of order: " + line,
+                             next[producer], Integer.parseInt(update.group(3)));
+                next[producer]++;
+            }
+        }
+
+        for (int producer = 0; producer < next.length; producer++)
+        {
+            assertEquals("Updates received from producer " + producer,
+                         perThread, next[producer]);
+        }
+    }
+
+    /**
+     * Accepts LCDd connections, replies to every command and records what
+     * each connection sent.
+     */
+    private static class FakeLCDd extends Thread
+    {
+        /**
+         * The greeting LCDd replies to hello with.
+         */
+        private static final String CONNECT = "connect LCDproc 0.5.9 " +
+            "protocol 0.3 lcd wid 20 hgt 4 cellwid 5 cellhgt 8\n";
+
+        /**
+         * The listening socket.
+         */
+        private final ServerSocket _socket;
+
+        /**
+         * The lines sent on each connection, added once it closes.
+         */
+        private final BlockingQueue<List<String>> _connections =
+            new LinkedBlockingQueue<>();
+
+        /**
+         * Constructor, listening on a free port.
+         * @throws IOException if it couldn't listen.
+         */
+        FakeLCDd()
+            throws IOException
+        {
+            super("FakeLCDd");
+            setDaemon(true);
+            _socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        }
+
+        /**
+         * Get the port we are listening on.
+         * @return the port.
+         */
+        int getPort()
+        {
+            return _socket.getLocalPort();
+        }
+
+        /**
+         * Get the lines sent on the next connection to close.
+         * @param timeout how long to wait (in seconds).
+         * @return the lines.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        List<String> getLines(int timeout)
+            throws InterruptedException
+        {
+            List<String> lines = _connections.poll(timeout, TimeUnit.SECONDS);
+            assertTrue("LCDd connection didn't close", lines != null);
+            return lines;
+        }
+
+        /**
+         * Stop listening.
+         * @throws IOException if the socket couldn't be closed.
+         */
+        void close()
+            throws IOException
+        {
+            _socket.close();
+        }
+
+        /**
+         * Accept connections until closed.
+         */
+        public void run()
+        {
+            while (!_socket.isClosed())
+            {
+                try
+                {
+                    Socket client = _socket.accept();
+                    Thread handler = new Thread(() -> handle(client),
+                                                "FakeLCDd-client");
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+                catch (IOException e)
+                {
+                    // Closed
+                }
+            }
+        }
+
+        /**
+         * Reply to every command on a connection until it closes.
+         * @param client the connection.
+         */
+        private void handle(Socket client)
+        {
+            List<String> lines = new ArrayList<>();
+            try (Socket socket = client;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(
+                         socket.getInputStream(), StandardCharsets.ISO_8859_1)))
+            {
+                OutputStream out = socket.getOutputStream();
+                String line = in.readLine();
+                while (line != null)
+                {
+                    lines.add(line);
+                    String reply = line.equals("hello") ?
+                        CONNECT : LCD.RESPONSE_SUCCESS + "\n";
+                    out.write(reply.getBytes(StandardCharsets.ISO_8859_1));
+                    line = in.readLine();
+                }
+            }
+            catch (IOException e)
+            {
+                // The client went away
+            }
+            _connections.add(lines);
+        }
+    }
+}
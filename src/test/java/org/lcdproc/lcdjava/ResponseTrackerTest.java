@@ -0,0 +1,134 @@
+package org.lcdproc.lcdjava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+/**
+ * ResponseTracker matches replies to commands in the order they were sent.
+ */
+public class ResponseTrackerTest
+{
+    /**
+     * Each reply completes the oldest command still waiting, skipping over
+     * untracked commands.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testMatchesInOrder()
+        throws Exception
+    {
+        ResponseTracker tracker = new ResponseTracker();
+        CompletableFuture<Response> first = new CompletableFuture<>();
+        CompletableFuture<Response> third = new CompletableFuture<>();
+        tracker.sent("first", first);
+        tracker.sent(null, null);
+        tracker.sent("third", third);
+
+        Response response = tracker.received("success", true);
+        assertSame(response, first.getNow(null));
+        assertEquals("first", response.getCommand());
+        assertTrue(response.isSuccess());
+        assertFalse(third.isDone());
+
+        assertNull(tracker.received("success", true));
+        assertFalse(third.isDone());
+
+        response = tracker.received("huh? no", false);
+        assertSame(response, third.getNow(null));
+        assertEquals("third", response.getCommand());
+        assertEquals("huh? no", response.getMessage());
+        assertFalse(response.isSuccess());
+
+        assertNull(tracker.received("success", true));
+    }
+
+    /**
+     * An error reply to an untracked command still produces a Response, so
+     * it can be logged.
+     */
+    @Test
+    public void testUntrackedError()
+    {
+        ResponseTracker tracker = new ResponseTracker();
+        tracker.sent(null, null);
+        Response response = tracker.received("huh? no", false);
+        assertFalse(response.isSuccess());
+        assertNull(response.getCommand());
+    }
+
+    /**
+     * Order is kept when more commands are in flight than the initial
+     * number of slots, and the slots have wrapped round.
+     */
+    @Test
+    public void testGrowKeepsOrder()
+    {
+        ResponseTracker tracker = new ResponseTracker();
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+
+        // Move the head along so the slots wrap round when they grow
+        for (int i = 0; i < 40; i++)
+        {
+            tracker.sent("warm up", null);
+            tracker.received("success", true);
+        }
+        for (int i = 0; i < 200; i++)
+        {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            tracker.sent("command " + i, future);
+            futures.add(future);
+        }
+        for (int i = 0; i < 200; i++)
+        {
+            tracker.received("success", true);
+            assertEquals("command " + i, futures.get(i).getNow(null).getCommand());
+        }
+    }
+
+    /**
+     * Failing the tracker fails every command still in flight, and it can
+     * be used again afterwards.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testFail()
+        throws Exception
+    {
+        ResponseTracker tracker = new ResponseTracker();
+        CompletableFuture<Response> answered = new CompletableFuture<>();
+        CompletableFuture<Response> pending = new CompletableFuture<>();
+        tracker.sent("answered", answered);
+        tracker.sent("pending", pending);
+        tracker.received("success", true);
+
+        LCDException cause = new LCDException("Connection closed");
+        tracker.fail(cause);
+        assertTrue(answered.get().isSuccess());
+        try
+        {
+            pending.get();
+            fail("Expected the command to fail");
+        }
+        catch (ExecutionException e)
+        {
+            assertSame(cause, e.getCause());
+        }
+
+        assertNull(tracker.received("success", true));
+        CompletableFuture<Response> later = new CompletableFuture<>();
+        tracker.sent("later", later);
+        tracker.received("success", true);
+        assertEquals("later", later.get().getCommand());
+    }
+}
@@ -0,0 +1,184 @@
+package org.lcdproc.lcdjava.idler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * IdlerCache loads each definition once, however many callers want it.
+ */
+public class IdlerCacheTest
+{
+    /**
+     * How long to wait for a caller (in seconds).
+     */
+    private static final int TIMEOUT = 5;
+
+    /**
+     * Runs the concurrent callers.
+     */
+    private final ExecutorService _callers = Executors.newCachedThreadPool();
+
+    /**
+     * Stop the callers.
+     */
+    @After
+    public void tearDown()
+    {
+        _callers.shutdownNow();
+    }
+
+    /**
+     * Callers arriving while a value loads share that load.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testSingleFlight()
+        throws Exception
+    {
+        IdlerCache<String> cache = new IdlerCache<>(10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<String> first = _callers.submit(() -> cache.get("key", 60000, () ->
+        {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(loading.await(TIMEOUT, TimeUnit.SECONDS));
+
+        List<Future<String>> others = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+        {
+            others.add(_callers.submit(() -> cache.get("key", 60000, () ->
+            {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        waitForHits(cache, 8);
+        release.countDown();
+
+        assertEquals("value", first.get(TIMEOUT, TimeUnit.SECONDS));
+        for (Future<String> other : others)
+        {
+            assertEquals("value", other.get(TIMEOUT, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * When a loader gives up, its caller gets nothing and the callers
+     * waiting on it load the value themselves.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testCancelledLoadRetried()
+        throws Exception
+    {
+        IdlerCache<String> cache = new IdlerCache<>(10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> aborted = _callers.submit(() -> cache.get("key", 60000, () ->
+        {
+            loading.countDown();
+            await(release);
+            throw new CancellationException("Destroyed");
+        }));
+        assertTrue(loading.await(TIMEOUT, TimeUnit.SECONDS));
+
+        Future<String> waiter = _callers.submit(() ->
+            cache.get("key", 60000, () -> "value"));
+        waitForHits(cache, 1);
+        release.countDown();
+
+        assertNull(aborted.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals("value", waiter.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals("value", cache.get("key", 60000, () -> "unused"));
+    }
+
+    /**
+     * Failed loads aren't cached, the next caller tries again.
+     */
+    @Test
+    public void testFailureNotCached()
+    {
+        IdlerCache<String> cache = new IdlerCache<>(10);
+        assertNull(cache.get("key", 60000, () -> null));
+        assertEquals(0, cache.size());
+        assertEquals("value", cache.get("key", 60000, () -> "value"));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Values older than the caller accepts are loaded again, and
+     * invalidated values are always loaded again.
+     * @throws Exception if something went wrong.
+     */
+    @Test
+    public void testReloads()
+        throws Exception
+    {
+        IdlerCache<String> cache = new IdlerCache<>(10);
+        assertEquals("first", cache.get("key", 60000, () -> "first"));
+        assertEquals("first", cache.get("key", 60000, () -> "second"));
+
+        Thread.sleep(20);
+        assertEquals("second", cache.get("key", 10, () -> "second"));
+
+        cache.invalidate("key");
+        assertEquals("third", cache.get("key", 60000, () -> "third"));
+    }
+
+    /**
+     * Wait for callers to find the entry being loaded.
+     * @param cache the cache they are calling.
+     * @param hits the number of callers.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static void waitForHits(IdlerCache<?> cache, int hits)
+        throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (cache.getHitCount() < hits)
+        {
+            assertTrue(System.nanoTime() < end);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Wait for a latch inside a loader, which can't throw checked
+     * exceptions.
+     * @param latch the latch.
+     */
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}